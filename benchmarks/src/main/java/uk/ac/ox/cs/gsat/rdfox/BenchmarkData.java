@@ -0,0 +1,179 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+/**
+ * The synthetic inputs of the benchmarks, generated from a fixed seed so that
+ * the results of two releases are comparable.
+ */
+public class BenchmarkData {
+
+    public final static String PREFIX = "http://example.com/onto#";
+    public final static long SEED = 0;
+    private final static String TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+    private final static int PREDICATE_COUNT = 500;
+
+    /**
+     * random full TGDs with two binary body atoms sharing a variable, and one
+     * or two head atoms
+     */
+    public static List<TGD> generateTGDs(int tgdCount) {
+        Random random = new Random(SEED);
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Variable z = Variable.create("z");
+
+        List<TGD> tgds = new ArrayList<>();
+        for (int i = 0; i < tgdCount; i++) {
+            Atom[] body = new Atom[] { Atom.create(getPredicate(random, 2), x, y),
+                    Atom.create(getPredicate(random, 2), y, z) };
+            Atom[] head = (random.nextBoolean())
+                    ? new Atom[] { Atom.create(getPredicate(random, 2), x, z) }
+                    : new Atom[] { Atom.create(getPredicate(random, 1), x), Atom.create(getPredicate(random, 1), z) };
+            tgds.add(TGD.create(body, head));
+        }
+        return tgds;
+    }
+
+    /**
+     * the TGDs copying each source predicate into a target predicate, whose
+     * materialization has twice the number of facts of the data
+     */
+    public static List<TGD> generateCopyTGDs(int predicateCount) {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+
+        List<TGD> tgds = new ArrayList<>();
+        for (int i = 0; i < predicateCount; i++) {
+            tgds.add(TGD.create(new Atom[] { Atom.create(Predicate.create(PREFIX + "source" + i, 2), x, y) },
+                    new Atom[] { Atom.create(Predicate.create(PREFIX + "target" + i, 2), x, y) }));
+        }
+        return tgds;
+    }
+
+    /**
+     * N-Triples facts of the source predicates of the copy TGDs
+     */
+    public static byte[] generateFacts(int factCount, int predicateCount) {
+        Random random = new Random(SEED);
+        StringBuilder facts = new StringBuilder();
+        for (int i = 0; i < factCount; i++) {
+            facts.append(String.format("<%se%d> <%ssource%d> <%se%d> .\n", PREFIX, i, PREFIX,
+                    random.nextInt(predicateCount), PREFIX, random.nextInt(factCount)));
+        }
+        return facts.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * random full TGDs joining two ternary body atoms on a variable into a
+     * binary head atom
+     */
+    public static List<TGD> generateTernaryTGDs(int tgdCount, int predicateCount) {
+        Random random = new Random(SEED);
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Variable z = Variable.create("z");
+        Variable u = Variable.create("u");
+        Variable w = Variable.create("w");
+
+        List<TGD> tgds = new ArrayList<>();
+        for (int i = 0; i < tgdCount; i++) {
+            Atom[] body = new Atom[] {
+                    Atom.create(Predicate.create(PREFIX + "T" + random.nextInt(predicateCount), 3), x, y, z),
+                    Atom.create(Predicate.create(PREFIX + "T" + random.nextInt(predicateCount), 3), z, u, w) };
+            Atom[] head = new Atom[] {
+                    Atom.create(Predicate.create(PREFIX + "joined" + random.nextInt(predicateCount), 2), x, w) };
+            tgds.add(TGD.create(body, head));
+        }
+        return tgds;
+    }
+
+    /**
+     * the same TGDs where each ternary body atom T(x, y, z) is reified into the
+     * binary atoms T_1(v, x), T_2(v, y) and T_3(v, z) of a fresh variable v
+     */
+    public static List<TGD> reifyTGDs(List<TGD> tgds) {
+        List<TGD> result = new ArrayList<>();
+        for (TGD tgd : tgds) {
+            List<Atom> body = new ArrayList<>();
+            for (Atom atom : tgd.getBodyAtoms()) {
+                if (atom.getPredicate().getArity() != 3) {
+                    body.add(atom);
+                    continue;
+                }
+                Variable fact = Variable.create("v" + body.size());
+                for (int k = 0; k < 3; k++) {
+                    body.add(Atom.create(Predicate.create(atom.getPredicate().getName() + "_" + (k + 1), 2), fact,
+                            atom.getTerm(k)));
+                }
+            }
+            result.add(TGD.create(body.toArray(new Atom[0]), tgd.getHeadAtoms()));
+        }
+        return result;
+    }
+
+    /**
+     * DLGP facts of the ternary predicates of the TGDs, or of their reified
+     * binary predicates, on a domain of a tenth of the facts
+     */
+    public static byte[] generateTernaryFacts(int factCount, int predicateCount, boolean reified) {
+        Random random = new Random(SEED);
+        int domainSize = Math.max(1, factCount / 10);
+        StringBuilder facts = new StringBuilder();
+        for (int i = 0; i < factCount; i++) {
+            String predicate = PREFIX + "T" + random.nextInt(predicateCount);
+            int[] arguments = { random.nextInt(domainSize), random.nextInt(domainSize), random.nextInt(domainSize) };
+            if (reified) {
+                for (int k = 0; k < 3; k++) {
+                    facts.append(String.format("<%s_%d>(f%d, e%d).\n", predicate, k + 1, i, arguments[k]));
+                }
+            } else {
+                facts.append(String.format("<%s>(e%d, e%d, e%d).\n", predicate, arguments[0], arguments[1],
+                        arguments[2]));
+            }
+        }
+        return facts.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * the concepts of the canned watdiv output
+     */
+    public static List<String> generateConcepts(int conceptCount) {
+        List<String> concepts = new ArrayList<>();
+        for (int i = 0; i < conceptCount; i++) {
+            concepts.add(PREFIX + "Concept" + i);
+        }
+        return concepts;
+    }
+
+    /**
+     * a canned watdiv output, alternating tab separated rdf:type triples, with
+     * the suffix 0 of the concepts, and role triples
+     */
+    public static byte[] generateWatDivOutput(int lineCount, List<String> concepts) {
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            int concept = i % concepts.size();
+            if (i % 2 == 0) {
+                output.append(String.format("<%sConcept%dEntity%d>\t%s\t<%s0> .\n", PREFIX, concept, i, TYPE,
+                        concepts.get(concept)));
+            } else {
+                output.append(String.format("<%sConcept%dEntity%d>\t<%srole%d>\t<%sConcept%dEntity%d> .\n", PREFIX,
+                        concept, i, PREFIX, i % 17, PREFIX, (i + 1) % concepts.size(), i + 1));
+            }
+        }
+        return output.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Predicate getPredicate(Random random, int arity) {
+        return Predicate.create(PREFIX + "P" + arity + "_" + random.nextInt(PREDICATE_COUNT), arity);
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
+
+/**
+ * The export and the count of the materialization of an in-process RDFox data
+ * store, materialized once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+    private final static String ROW_NAME = "export";
+
+    @Param({ "100000", "1000000" })
+    public int factCount;
+
+    @Param({ "20" })
+    public int predicateCount;
+
+    private RDFoxMaterializer materializer;
+
+    @Setup
+    public void setUp() throws JRDFoxException, IOException {
+        StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
+        statsCollector.start(ROW_NAME);
+        materializer = new RDFoxMaterializer("benchmark");
+        materializer.setStatsCollector(ROW_NAME, statsCollector);
+        materializer.load(new ByteArrayInputStream(BenchmarkData.generateFacts(factCount, predicateCount)), true,
+                BenchmarkData.generateCopyTGDs(predicateCount));
+    }
+
+    @TearDown
+    public void tearDown() {
+        materializer.close();
+    }
+
+    @Benchmark
+    public long export() throws JRDFoxException, IOException {
+        return materializer.export(new DiscardingOutputStream());
+    }
+
+    @Benchmark
+    public long count() throws JRDFoxException, IOException {
+        return materializer.export(null);
+    }
+
+    /**
+     * a stream consuming the bytes without copying them
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
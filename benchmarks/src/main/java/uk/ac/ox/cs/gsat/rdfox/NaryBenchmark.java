@@ -0,0 +1,85 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
+import uk.ac.ox.cs.pdq.fol.TGD;
+
+/**
+ * The loading and the materialization of the same TGDs over ternary
+ * predicates, either stored natively in the tuple tables of the predicates or
+ * reified into binary triples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NaryBenchmark {
+
+    private final static String ROW_NAME = "nary";
+
+    @Param({ "native", "reified" })
+    public String encoding;
+
+    @Param({ "100000" })
+    public int factCount;
+
+    @Param({ "10" })
+    public int predicateCount;
+
+    @Param({ "50" })
+    public int tgdCount;
+
+    private Path factFile;
+    private List<TGD> tgds;
+    private RDFoxMaterializer materializer;
+
+    @Setup
+    public void setUp() throws JRDFoxException, IOException {
+        boolean reified = "reified".equals(encoding);
+        factFile = Files.createTempFile("nary-" + encoding, ".dlgp");
+        Files.write(factFile, BenchmarkData.generateTernaryFacts(factCount, predicateCount, reified));
+        tgds = BenchmarkData.generateTernaryTGDs(tgdCount, predicateCount);
+        if (reified) {
+            tgds = BenchmarkData.reifyTGDs(tgds);
+        }
+
+        StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
+        statsCollector.start(ROW_NAME);
+        materializer = new RDFoxMaterializer("benchmark");
+        materializer.setStatsCollector(ROW_NAME, statsCollector);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        materializer.close();
+        Files.delete(factFile);
+    }
+
+    @Benchmark
+    public long materialize() throws JRDFoxException, IOException {
+        materializer.load(factFile.toString(), tgds);
+        return materializer.export(null);
+    }
+}
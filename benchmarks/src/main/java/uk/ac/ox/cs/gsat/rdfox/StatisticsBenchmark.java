@@ -0,0 +1,62 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
+
+/**
+ * The ticks of the statistics collector, by one thread and by several threads
+ * each recording its own row, as the concurrent runs do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Collector {
+
+        private final StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
+        private final AtomicInteger rowCount = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Row {
+
+        private String rowName;
+
+        @Setup
+        public void setUp(Collector collector) {
+            rowName = "row" + collector.rowCount.getAndIncrement();
+            collector.statsCollector.start(rowName);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void tick(Collector collector, Row row) {
+        collector.statsCollector.tick(row.rowName, MaterializationStatColumns.MAT_TIME);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void tickConcurrently(Collector collector, Row row) {
+        collector.statsCollector.tick(row.rowName, MaterializationStatColumns.MAT_TIME);
+    }
+}
@@ -0,0 +1,55 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tech.oxfordsemantic.jrdfox.logic.datalog.Rule;
+import uk.ac.ox.cs.pdq.fol.TGD;
+
+/**
+ * The translation of rule sets of increasing size into RDFox rules, TGD by
+ * TGD with RDFoxFactory and at once with RDFoxTranslator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslationBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int tgdCount;
+
+    private List<TGD> tgds;
+
+    @Setup
+    public void setUp() {
+        tgds = BenchmarkData.generateTGDs(tgdCount);
+    }
+
+    @Benchmark
+    public void createDatalogRule(Blackhole blackhole) {
+        for (TGD tgd : tgds) {
+            blackhole.consume(RDFoxFactory.createDatalogRule(tgd));
+        }
+    }
+
+    @Benchmark
+    public List<Rule> translate() {
+        return new RDFoxTranslator().translate(tgds);
+    }
+}
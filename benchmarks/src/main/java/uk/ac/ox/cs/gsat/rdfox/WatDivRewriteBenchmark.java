@@ -0,0 +1,66 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The rewriting of the lines produced by watdiv, as done while the input is
+ * generated, fed from a canned output and written into a discarding stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatDivRewriteBenchmark {
+
+    @Param({ "1000000" })
+    public int lineCount;
+
+    @Param({ "250" })
+    public int conceptCount;
+
+    private List<String> concepts;
+    private byte[] watdivOutput;
+
+    @Setup
+    public void setUp() {
+        concepts = BenchmarkData.generateConcepts(conceptCount);
+        watdivOutput = BenchmarkData.generateWatDivOutput(lineCount, concepts);
+    }
+
+    @Benchmark
+    public long rewrite() throws IOException {
+        return new WatDivRewriter(concepts).rewrite(new ByteArrayInputStream(watdivOutput), new DiscardingOutputStream());
+    }
+
+    /**
+     * a stream consuming the bytes without copying them
+     */
+    private static class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
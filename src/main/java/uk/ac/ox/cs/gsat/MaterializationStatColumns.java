@@ -4,6 +4,8 @@ import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsColumn;
 
 public enum MaterializationStatColumns implements StatisticsColumn {
 
+    // the new columns are appended, so that the existing ones keep their position in mat-stats.csv
+
     // number of full tgds used for the materialization  
     MAT_FTGD_NB,
     // size of the generated input
@@ -11,16 +13,79 @@ public enum MaterializationStatColumns implements StatisticsColumn {
     // size of the materialization
     MAT_SIZE,
     // time required to generated the input
-    MAT_GEN_TIME,
+    MAT_GEN_TIME(true),
     // time required to initialize the materialization system
-    MAT_INIT_TIME,
+    MAT_INIT_TIME(true),
     // time required to load the data
-    MAT_DATA_LOAD_TIME,
+    MAT_DATA_LOAD_TIME(true),
     // time of the materialization process (applying the rules)
-    MAT_TIME,
+    MAT_TIME(true),
     // time required to write the output
-    MAT_WRITING_TIME,
+    MAT_WRITING_TIME(true),
     // total time of the materialization process
-    MAT_TOTAL
+    MAT_TOTAL(true),
+    // time required to add and remove the facts of an incremental update
+    MAT_DELTA_LOAD_TIME(true),
+    // time required to add and remove the rules of an incremental update and to maintain the materialization
+    MAT_DELTA_TIME(true),
+    // time required to compute and write the facts changed by an incremental update
+    MAT_DELTA_WRITING_TIME(true),
+    // number of facts added to the materialization by an incremental update
+    MAT_DELTA_ADDED_SIZE,
+    // number of facts removed from the materialization by an incremental update
+    MAT_DELTA_REMOVED_SIZE,
+    // number of facts written in each shard of the output
+    MAT_SHARD_SIZES,
+    // number of facts loaded per second
+    MAT_DATA_LOAD_THROUGHPUT,
+    // 1 if the generated input has been found in the cache, 0 otherwise
+    MAT_GEN_CACHE_HIT,
+    // time required to parse the TGDs, or to read them from their cache
+    MAT_PARSE_TIME(true),
+    // time required to translate the TGDs into datalog rules
+    MAT_TRANSLATION_TIME(true),
+    // number of TGDs whose body is evaluated once for all their head atoms
+    MAT_SHARED_BODY_TGDS,
+    // time required to prune the TGDs that are useless for the loaded data
+    MAT_PRUNING_TIME(true),
+    // number of TGDs pruned as duplicated, never applicable or subsumed
+    MAT_PRUNED_RULES,
+    // number of connected components of the predicates of the TGDs, in the partitioned mode
+    MAT_COMPONENT_NB,
+    // number of strata of the TGDs, in the stratified mode
+    MAT_STRATUM_NB,
+    // number of facts derived per second of materialization
+    MAT_MATERIALIZATION_THROUGHPUT,
+    // number of facts written per second
+    MAT_WRITING_THROUGHPUT,
+    // peak of the JVM heap used during the run, in bytes
+    MAT_HEAP_PEAK,
+    // peak of the JVM non-heap memory and buffers used during the run, in bytes
+    MAT_OFF_HEAP_PEAK,
+    // number of facts in the data store once the data are loaded
+    MAT_LOADED_FACTS,
+    // memory used by the data store once the data are loaded, in bytes
+    MAT_LOAD_STORE_MEMORY,
+    // memory used by the data store once the materialization is done, in bytes
+    MAT_STORE_MEMORY,
+    // OK, or TIMEOUT and OOM when the run has been stopped by its time or memory limit
+    MAT_STATUS,
+    // number of threads of the RDFox server during the run
+    MAT_THREADS;
+
+    // whether the column is a duration, measured in nanoseconds
+    private final boolean timing;
+
+    private MaterializationStatColumns() {
+        this(false);
+    }
+
+    private MaterializationStatColumns(boolean timing) {
+        this.timing = timing;
+    }
 
+    @Override
+    public boolean isTiming() {
+        return timing;
+    }
 }
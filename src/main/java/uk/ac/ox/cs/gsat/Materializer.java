@@ -1,5 +1,6 @@
 package uk.ac.ox.cs.gsat;
 
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Collection;
 
@@ -22,6 +23,23 @@ public interface Materializer {
      */
     public long materialize(String inputDataFile, Collection<TGD> fullTGDs, String outputFile) throws Exception;
 
+    /**
+     * Returns the number of materialized facts, the input data being read as
+     * N-Triples from the stream while it is produced
+     */
+    public long materialize(InputStream inputData, Collection<TGD> fullTGDs, String outputFile) throws Exception;
+
+    /**
+     * Update the last materialization with the added and removed facts and full
+     * TGDs, without reloading the unchanged ones, and write the facts that the
+     * update adds to and removes from the materialization. Each of the data files
+     * and the output streams can be null.
+     * 
+     * Returns the number of added and removed materialized facts
+     */
+    public long update(String addedDataFile, String removedDataFile, Collection<TGD> addedFullTGDs,
+            Collection<TGD> removedFullTGDs, OutputStream addedFactsStream, OutputStream removedFactsStream)
+            throws Exception;
 
     public void setStatsCollector(String rowName, StatisticsCollector<MaterializationStatColumns> statsCollector);
 }
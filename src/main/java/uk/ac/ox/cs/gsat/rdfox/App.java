@@ -1,24 +1,46 @@
 package uk.ac.ox.cs.gsat.rdfox;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 
 import tech.oxfordsemantic.jrdfox.Prefixes;
 import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
@@ -26,6 +48,10 @@ import tech.oxfordsemantic.jrdfox.logic.expression.IRI;
 import tech.oxfordsemantic.jrdfox.logic.sparql.pattern.TriplePattern;
 import uk.ac.ox.cs.gsat.DLGPIO;
 import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.gsat.rdfox.statistics.AsyncStatisticsSink;
+import uk.ac.ox.cs.gsat.rdfox.statistics.Distribution;
+import uk.ac.ox.cs.gsat.rdfox.statistics.JsonLinesSink;
+import uk.ac.ox.cs.gsat.rdfox.statistics.PrometheusTextfileSink;
 import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
 import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsLogger;
 import uk.ac.ox.cs.pdq.fol.Atom;
@@ -37,112 +63,743 @@ public class App {
 
     private final static String INPUT_REGEX = ".*\\.rul";
     private final static String STATS_FILENAME = "mat-stats.csv";
+    private final static String OPTION_PREFIX = "--";
+    public final static String JOBS_OPTION = "jobs";
+    public final static String LOAD_THREADS_OPTION = "load-threads";
+    // with "on", the generated data are also written into the input file
+    public final static String KEEP_INPUT_OPTION = "keep-input";
+    private final static int GENERATION_BUFFER_SIZE = 8 << 20;
+    // directory of the cache of the generated data and its size limit in MB
+    public final static String INPUT_CACHE_OPTION = "input-cache";
+    public final static String INPUT_CACHE_SIZE_OPTION = "input-cache-size";
+    // with "off", the parsed TGDs are not cached next to the rule files
+    public final static String TGD_CACHE_OPTION = "tgd-cache";
+    // with "on", the bodies of the TGDs with several head atoms are evaluated once
+    public final static String SHARED_BODY_OPTION = "shared-body";
+    // with "on", the TGDs that are useless for the loaded data are not loaded
+    public final static String PRUNE_OPTION = "prune";
+    // maximal number of data stores materializing the components of the TGDs concurrently
+    public final static String PARTITIONS_OPTION = "partitions";
+    // directory of the breakdowns of the materializations by strata
+    public final static String STRATA_OPTION = "strata";
+    // directory of the progress samples of the runs, their interval in seconds, and with "on" they are also printed
+    public final static String PROGRESS_OPTION = "progress";
+    public final static String PROGRESS_INTERVAL_OPTION = "progress-interval";
+    public final static String PROGRESS_CONSOLE_OPTION = "progress-console";
+    // with "on", the thread CPU time and the allocated bytes of each phase are also reported
+    public final static String PHASE_RESOURCES_OPTION = "phase-resources";
+    // number of runs of each rule file whose statistics are dropped, and of measured runs
+    public final static String WARMUP_OPTION = "warmup";
+    public final static String REPEAT_OPTION = "repeat";
+    // separator of the row name and the repetition in the rows of the repeated runs
+    private final static String ROW_SEPARATOR = "#";
+    // the share of the heap that has to be free after a run out of memory to start the next runs
+    private final static double MIN_FREE_HEAP_RATIO = 0.1;
+    // wall-clock time in seconds and memory of the data stores in MB above which a run is stopped
+    public final static String TIMEOUT_OPTION = "timeout";
+    public final static String MEMORY_LIMIT_OPTION = "memory-limit";
+    // file of options given as <name>=<value> lines, which the command line overrides
+    public final static String CONFIG_OPTION = "config";
+    // number of threads of the RDFox server, type of its data stores and their initial capacities
+    public final static String THREADS_OPTION = "threads";
+    public final static String STORE_TYPE_OPTION = "store-type";
+    public final static String INIT_RESOURCE_CAPACITY_OPTION = "init-resource-capacity";
+    public final static String INIT_TUPLE_CAPACITY_OPTION = "init-tuple-capacity";
+    // prefixes of the options passed as they are to the RDFox server and to its data stores
+    public final static String SERVER_PARAMETER_PREFIX = "server.";
+    public final static String STORE_PARAMETER_PREFIX = "store.";
+    // maximal number of threads of the sweep running a rule file with 1, 2, 4, ... threads
+    public final static String SWEEP_OPTION = "sweep";
+    // with "off", the materialization is only counted, not written
+    public final static String OUTPUT_OPTION = "output";
+    // file into which the rows are streamed as JSON Lines, with the ticks of the phases when "on"
+    public final static String STATS_JSONL_OPTION = "stats-jsonl";
+    public final static String STATS_TICKS_OPTION = "stats-ticks";
+    // file into which the rows are exported in the Prometheus text format
+    public final static String STATS_PROMETHEUS_OPTION = "stats-prometheus";
 
     public static void main(String[] args) throws Exception {
         StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
         StatisticsLogger statsLogger;
 
-        if (args.length == 2 && isInt(args[1])) {
-            int scaleFactor = Integer.parseInt(args[1]);
-            // with the first argument can be either the path to a TGDs file or a directory
-            // to browse
+        // the options of the form --<name> <value> are separated from the positional arguments
+        Properties options = new Properties();
+        args = parseOptions(args, options);
+        loadConfig(options);
+        configureServer(options);
+        RunOptions runOptions = RunOptions.fromProperties(options);
+        List<AsyncStatisticsSink> statsSinks = getStatisticsSinks(options);
+        // the sinks are closed even if a run fails, so that the rows already streamed are flushed
+        try {
+            for (AsyncStatisticsSink statsSink : statsSinks) {
+                statsCollector.addListener(statsSink);
+            }
+            int jobs = Integer.parseInt(options.getProperty(JOBS_OPTION, "1"));
+            if (jobs > 1 && runOptions.getMaxSweepThreadCount() > 0) {
+                // the number of threads is shared by the concurrent runs
+                System.out.println("The sweep runs the rule files one after the other, --jobs is ignored");
+                jobs = 1;
+            }
 
-            if (new File(args[0]).isDirectory()) {
-                String inputDirectory = getAbsolutePath(args[0]);
+            if (args.length == 2 && isInt(args[1])) {
+                int scaleFactor = Integer.parseInt(args[1]);
+                // with the first argument can be either the path to a TGDs file or a directory
+                // to browse
+
+                if (new File(args[0]).isDirectory()) {
+                    String inputDirectory = getAbsolutePath(args[0]);
+
+                    statsLogger = getStatisticsLogger(statsCollector, inputDirectory, options);
+
+                    List<String> tgdsPaths = Files
+                            .find(Paths.get(inputDirectory), 999,
+                                    (p, bfa) -> bfa.isRegularFile() && p.getFileName().toString().matches(INPUT_REGEX))
+                            .map(p -> p.toString()).collect(Collectors.toList());
+
+                    Collections.sort(tgdsPaths);
+
+                    statsLogger.printHeader();
+                    if (jobs > 1) {
+                        runInParallel(tgdsPaths, statsCollector, statsLogger, scaleFactor, jobs, runOptions);
+                    } else {
+                        for (String tgdsPath : tgdsPaths) {
+                            List<String> rowNames = runSweep(getRowName(tgdsPath), getSweepPath(tgdsPath), statsCollector,
+                                    (rowName, collector) -> runFromTGDFile(tgdsPath, rowName, collector, scaleFactor,
+                                            RDFoxMaterializer.DEFAULT_DATA_STORE_NAME, runOptions),
+                                    runOptions);
+                            printRows(statsLogger, rowNames);
+                        }
+                    }
+
+                } else {
+                    String tgdsPath = getAbsolutePath(args[0]);
+
+                    statsLogger = getStatisticsLogger(statsCollector, null, options);
+
+                    List<String> rowNames = runSweep(getRowName(tgdsPath), getSweepPath(tgdsPath), statsCollector,
+                            (rowName, collector) -> runFromTGDFile(tgdsPath, rowName, collector, scaleFactor,
+                                    RDFoxMaterializer.DEFAULT_DATA_STORE_NAME, runOptions),
+                            runOptions);
+                    statsLogger.printHeader();
+                    printRows(statsLogger, rowNames);
+                }
+
+            } else if (args.length == 2 || args.length == 3) {
+                // with 2 or 3 arguments
+                // the first argument is a data file
+                String dataPath = getAbsolutePath(args[0]);
+                // the second argument is a TGDs file
+                String tgdsPath = getAbsolutePath(args[1]);
+                // the materialization file is given or induced
+                String outputPath;
+
+                if (!runOptions.isOutputEnabled()) {
+                    outputPath = null;
+                } else if (args.length == 2) {
+                    outputPath = getMaterializationPath(tgdsPath);
+                } else {
+                    outputPath = getAbsolutePath(args[2]);
+                }
 
-                statsLogger = getStatisticsLogger(statsCollector, inputDirectory);
+                statsLogger = getStatisticsLogger(statsCollector, null, options);
+                List<String> rowNames = runSweep(getRowName(tgdsPath), getSweepPath(tgdsPath), statsCollector,
+                        (rowName, collector) -> {
+                            collector.start(rowName);
+                            Collection<TGD> fullTGDs = parseDLGP(tgdsPath, runOptions.isTGDCacheEnabled());
+                            collector.tick(rowName, MaterializationStatColumns.MAT_PARSE_TIME);
+                            run(dataPath, fullTGDs, outputPath, collector, rowName,
+                                    RDFoxMaterializer.DEFAULT_DATA_STORE_NAME, runOptions);
+                        }, runOptions);
+                statsLogger.printHeader();
+                printRows(statsLogger, rowNames);
 
-                List<String> tgdsPaths = Files
-                        .find(Paths.get(inputDirectory), 999,
-                                (p, bfa) -> bfa.isRegularFile() && p.getFileName().toString().matches(INPUT_REGEX))
-                        .map(p -> p.toString()).collect(Collectors.toList());
+            } else {
+                System.out.println("the arguments are: [--jobs <n>] <tgds file or directory containing tgds files> <scale factor>");
+                System.out.println("the arguments are: <input data file> <rule file> [<output file>]");
+                System.out.println("<input data file> is in N-Triples, Turtle, or DLGP and CSV for the facts of the predicates of any arity");
+                System.out.println("the nullary and ternary facts are stored in tuple tables, the facts of more than three arguments are reified");
+                System.out.println(
+                        "if <input data file> is not given then the input data will be generated automatically into a NTriple file from the TGDs using WatDiv");
+                System.out.println("with --jobs <n>, the tgds files of a directory are materialized by n concurrent runs");
+                System.out.println("with --load-threads <n>, the chunks of a N-Triples input are imported by n connections");
+                System.out.println("with --keep-input on, the data generated by watdiv are also written into <name>-input.nt");
+                System.out.println("with --input-cache <directory> [--input-cache-size <MB>], the data generated by watdiv are cached");
+                System.out.println("with --tgd-cache off, the parsed TGDs are not cached into <rule file>.tgds");
+                System.out.println("with --shared-body on, the body of a TGD with several head atoms is evaluated once");
+                System.out.println("with --prune on, the duplicated, subsumed and never applicable TGDs are not loaded");
+                System.out.println("with --partitions <n>, the components of the TGDs are materialized by n concurrent data stores");
+                System.out.println("with --strata <directory>, the rules are imported stratum by stratum and timed in <directory>/<name>-strata.csv");
+                System.out.println("with --progress <directory> [--progress-interval <s>] [--progress-console on], the progress of the runs is sampled into <directory>/<name>-progress.csv");
+                System.out.println("with --warmup <n> --repeat <m>, each rule file is run n times for warm-up then m measured times");
+                System.out.println("with --timeout <s> and --memory-limit <MB>, a run exceeding its limits is stopped and marked TIMEOUT or OOM");
+                System.out.println("with --threads <n>, --store-type <type>, --init-resource-capacity <n> and --init-tuple-capacity <n>, the RDFox server and data stores are configured");
+                System.out.println("with --server.<parameter> <value> and --store.<parameter> <value>, any parameter is given to the RDFox server and data stores");
+                System.out.println("with --config <file>, the options are also read from the <name>=<value> lines of the file");
+                System.out.println("with --sweep <n>, each rule file is run with 1, 2, 4, ... n threads and the speedups are written into <name>-sweep.csv");
+                System.out.println("with --phase-resources on, the CPU time and the allocated bytes of each phase are also reported");
+                System.out.println("with --stats-jsonl <file> [--stats-ticks on], the rows (and the ticks) are streamed as JSON Lines");
+                System.out.println("with --stats-prometheus <file>, the rows are exported in the Prometheus text format");
+                System.out.println("with --output off, the materialization is counted without being written");
+                System.out.println("with --compression none|gzip|zstd [--compression-threads <n>], the materialization is compressed");
+                System.out.println("with --shards <n> [--shard-by subject|predicate], the materialization is split into n files");
+                return;
+            }
 
-                Collections.sort(tgdsPaths);
+            statsLogger.close();
+        } finally {
+            closeStatisticsSinks(statsSinks);
+        }
+    }
 
-                statsLogger.printHeader();
-                for (String tgdsPath : tgdsPaths) {
-                    runFromTGDFile(tgdsPath, statsCollector,scaleFactor);
-                    statsLogger.printRow(getRowName(tgdsPath));
+    /**
+     * Close every sink, the failure of one of them not preventing the others
+     * from being closed
+     */
+    protected static void closeStatisticsSinks(List<AsyncStatisticsSink> statsSinks) {
+        for (AsyncStatisticsSink statsSink : statsSinks) {
+            try {
+                statsSink.close();
+            } catch (IOException e) {
+                System.out.println(String.format("Failed to close a statistics sink: %s", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Returns the sinks given by the command line options, which are fed
+     * asynchronously with the completed rows
+     */
+    public static List<AsyncStatisticsSink> getStatisticsSinks(Properties options) throws IOException {
+        List<AsyncStatisticsSink> statsSinks = new ArrayList<>();
+        if (options.containsKey(STATS_JSONL_OPTION)) {
+            OutputStream out = new FileOutputStream(getAbsolutePath(options.getProperty(STATS_JSONL_OPTION)));
+            statsSinks.add(new AsyncStatisticsSink(new JsonLinesSink(out),
+                    "on".equals(options.getProperty(STATS_TICKS_OPTION))));
+        }
+        if (options.containsKey(STATS_PROMETHEUS_OPTION)) {
+            statsSinks.add(new AsyncStatisticsSink(
+                    new PrometheusTextfileSink(Paths.get(getAbsolutePath(options.getProperty(STATS_PROMETHEUS_OPTION)))),
+                    false));
+        }
+        return statsSinks;
+    }
+
+    /**
+     * Materialize the TGDs files using a pool of jobs threads, each of them having
+     * its own data store. The rows are still printed in the order of the paths.
+     */
+    public static void runInParallel(List<String> tgdsPaths,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, StatisticsLogger statsLogger,
+            int scaleFactor, int jobs, RunOptions options) throws Exception {
+
+        BlockingQueue<String> dataStoreNames = new ArrayBlockingQueue<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            dataStoreNames.add(RDFoxMaterializer.DEFAULT_DATA_STORE_NAME + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<List<String>>> runs = new ArrayList<>();
+            for (String tgdsPath : tgdsPaths) {
+                runs.add(executor.submit(() -> {
+                    String dataStoreName = dataStoreNames.take();
+                    try {
+                        return runRepeatedly(getRowName(tgdsPath), statsCollector,
+                                (rowName, collector) -> runFromTGDFile(tgdsPath, rowName, collector, scaleFactor,
+                                        dataStoreName, options),
+                                options);
+                    } finally {
+                        dataStoreNames.put(dataStoreName);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < tgdsPaths.size(); i++) {
+                List<String> rowNames;
+                try {
+                    rowNames = runs.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
                 }
+                printRows(statsLogger, rowNames);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            } else {
-                String tgdsPath = getAbsolutePath(args[0]);
+    /**
+     * A run of the materialization, recording its statistics into the given
+     * row of the collector
+     */
+    protected interface MaterializationRun {
+        void run(String rowName, StatisticsCollector<MaterializationStatColumns> statsCollector) throws Exception;
+    }
+
+    /**
+     * Runs the warm-up iterations given by --warmup, whose statistics are
+     * dropped, then the repetitions given by --repeat. Returns the rows to
+     * print: the row of each repetition followed by the rows of the
+     * aggregates of the timing columns. Without warm-up and repetition, the
+     * run is recorded into the given row.
+     */
+    protected static List<String> runRepeatedly(String rowName,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, MaterializationRun run,
+            RunOptions options) throws Exception {
+        int warmup = options.getWarmup();
+        int repeat = options.getRepeat();
+        if (warmup <= 0 && repeat <= 1) {
+            run.run(rowName, statsCollector);
+            statsCollector.complete(rowName);
+            return Collections.singletonList(rowName);
+        }
 
-                statsLogger = getStatisticsLogger(statsCollector, null);
+        for (int i = 1; i <= warmup; i++) {
+            run.run(rowName + ROW_SEPARATOR + "warmup" + i, new StatisticsCollector<>());
+        }
 
-                runFromTGDFile(tgdsPath, statsCollector, scaleFactor);
-                statsLogger.printHeader();
-                statsLogger.printRow(getRowName(tgdsPath));
+        List<String> rowNames = new ArrayList<>();
+        for (int i = 1; i <= repeat; i++) {
+            String repetitionName = rowName + ROW_SEPARATOR + i;
+            run.run(repetitionName, statsCollector);
+            statsCollector.complete(repetitionName);
+            rowNames.add(repetitionName);
+        }
+        for (String aggregateName : aggregate(rowName, new ArrayList<>(rowNames), statsCollector)) {
+            statsCollector.complete(aggregateName);
+            rowNames.add(aggregateName);
+        }
+        return rowNames;
+    }
+
+    /**
+     * Runs the rule file with 1, 2, 4, ... threads up to the number given by
+     * --sweep, each thread count being measured by runRepeatedly into the rows
+     * <name>#t<n>, then writes the time, the speedup and the parallel
+     * efficiency of each timing column into the sweep file. The median is used
+     * for the repeated runs. Without --sweep, the run is only measured by
+     * runRepeatedly.
+     */
+    protected static List<String> runSweep(String rowName, String sweepPath,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, MaterializationRun run,
+            RunOptions options) throws Exception {
+        int maxThreadCount = options.getMaxSweepThreadCount();
+        if (maxThreadCount <= 0) {
+            return runRepeatedly(rowName, statsCollector, run, options);
+        }
+
+        RDFoxServer server = RDFoxServer.getInstance();
+        int initialThreadCount = server.getNumberOfThreads();
+        List<String> rowNames = new ArrayList<>();
+        // the row of the times measured with each number of threads
+        Map<Integer, String> measuredRows = new LinkedHashMap<>();
+        try {
+            for (int threadCount : getSweepThreadCounts(maxThreadCount)) {
+                server.setNumberOfThreads(threadCount);
+                String threadRowName = rowName + ROW_SEPARATOR + "t" + threadCount;
+                List<String> threadRowNames = runRepeatedly(threadRowName, statsCollector, run, options);
+                rowNames.addAll(threadRowNames);
+                measuredRows.put(threadCount, (threadRowNames.size() == 1) ? threadRowNames.get(0)
+                        : threadRowName + ROW_SEPARATOR + "median");
             }
+        } finally {
+            server.setNumberOfThreads(initialThreadCount);
+        }
 
-        } else if (args.length == 2 || args.length == 3) {
-            // with 2 or 3 arguments
-            // the first argument is a data file
-            String dataPath = getAbsolutePath(args[0]);
-            // the second argument is a TGDs file
-            String tgdsPath = getAbsolutePath(args[1]);
-            // the materialization file is given or induced
-            String outputPath;
-
-            if (args.length == 2) {
-                outputPath = getMaterializationPath(tgdsPath);
-            } else {
-                outputPath = getAbsolutePath(args[2]);
+        writeSweep(sweepPath, measuredRows, statsCollector);
+        return rowNames;
+    }
+
+    /**
+     * the powers of two below the maximal number of threads, followed by it
+     */
+    protected static List<Integer> getSweepThreadCounts(int maxThreadCount) {
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threadCount = 1; threadCount < maxThreadCount; threadCount *= 2) {
+            threadCounts.add(threadCount);
+        }
+        threadCounts.add(maxThreadCount);
+        return threadCounts;
+    }
+
+    /**
+     * write for each number of threads and timing column the time in ms, the
+     * speedup over the first number of threads and the parallel efficiency,
+     * i.e. the speedup per thread
+     */
+    protected static void writeSweep(String sweepPath, Map<Integer, String> measuredRows,
+            StatisticsCollector<MaterializationStatColumns> statsCollector) throws IOException {
+        String baseRowName = measuredRows.values().iterator().next();
+        try (PrintStream sweepStream = new PrintStream(new FileOutputStream(sweepPath), false, "UTF-8")) {
+            sweepStream.println("threads,phase,time,speedup,efficiency");
+            for (Map.Entry<Integer, String> measuredRow : measuredRows.entrySet()) {
+                int threadCount = measuredRow.getKey();
+                for (MaterializationStatColumns col : MaterializationStatColumns.values()) {
+                    Object baseTime = statsCollector.get(baseRowName, col);
+                    Object time = statsCollector.get(measuredRow.getValue(), col);
+                    // the runs stopped by their limits have no time
+                    if (!col.isTiming() || !(baseTime instanceof Number) || !(time instanceof Number)) {
+                        continue;
+                    }
+                    long nanos = ((Number) time).longValue();
+                    double speedup = (nanos > 0) ? ((Number) baseTime).longValue() / (double) nanos : 0;
+                    sweepStream.println(String.format(Locale.ROOT, "%d,%s,%.3f,%.3f,%.3f", threadCount, col.name(),
+                            nanos / 1e6, speedup, speedup / threadCount));
+                }
             }
+        }
+        System.out.println(String.format("The sweep is written into: %s", sweepPath));
+    }
 
-            statsLogger = getStatisticsLogger(statsCollector, null);
-            String rowName = getRowName(tgdsPath);
-            statsCollector.start(rowName);
-            run(dataPath, parseDLGP(tgdsPath), outputPath, statsCollector, rowName);
-            statsLogger.printHeader();
-            statsLogger.printRow(getRowName(tgdsPath));
+    /**
+     * Puts the minimum, the median, the 90th percentile and the standard
+     * deviation of each timing column of the rows into the rows
+     * <name>#min, <name>#median, <name>#p90 and <name>#stddev, and returns them
+     */
+    protected static List<String> aggregate(String rowName, List<String> rowNames,
+            StatisticsCollector<MaterializationStatColumns> statsCollector) {
+        String min = rowName + ROW_SEPARATOR + "min";
+        String median = rowName + ROW_SEPARATOR + "median";
+        String p90 = rowName + ROW_SEPARATOR + "p90";
+        String stddev = rowName + ROW_SEPARATOR + "stddev";
+
+        for (MaterializationStatColumns col : MaterializationStatColumns.values()) {
+            if (!col.isTiming()) {
+                continue;
+            }
+            List<Long> values = new ArrayList<>();
+            for (String name : rowNames) {
+                Object value = statsCollector.get(name, col);
+                if (value instanceof Number) {
+                    values.add(((Number) value).longValue());
+                }
+            }
+            if (values.isEmpty()) {
+                continue;
+            }
 
-        } else {
-            System.out.println("the arguments are: <tgds file or directory containing tgds files> <scale factor>");
-            System.out.println("the arguments are: <input data file> <rule file> [<output file>]");
-            System.out.println(
-                    "if <input data file> is not given then the input data will be generated automatically into a NTriple file from the TGDs using WatDiv");
-            return;
+            Distribution distribution = new Distribution(values);
+            statsCollector.put(min, col, distribution.min());
+            statsCollector.put(median, col, distribution.median());
+            statsCollector.put(p90, col, distribution.percentile(90));
+            statsCollector.put(stddev, col, Math.round(distribution.standardDeviation()));
         }
+        return Arrays.asList(min, median, p90, stddev);
+    }
 
-        statsLogger.close();
+    protected static void printRows(StatisticsLogger statsLogger, List<String> rowNames) {
+        for (String rowName : rowNames) {
+            statsLogger.printRow(rowName);
+        }
     }
 
     public static void runFromTGDFile(String tgdsPath, StatisticsCollector<MaterializationStatColumns> statsCollector,
             int scaleFactor) throws IOException, JRDFoxException {
+        runFromTGDFile(tgdsPath, statsCollector, scaleFactor, RDFoxMaterializer.DEFAULT_DATA_STORE_NAME);
+    }
+
+    public static void runFromTGDFile(String tgdsPath, StatisticsCollector<MaterializationStatColumns> statsCollector,
+            int scaleFactor, String dataStoreName) throws IOException, JRDFoxException {
+        runFromTGDFile(tgdsPath, getRowName(tgdsPath), statsCollector, scaleFactor, dataStoreName, new RunOptions());
+    }
+
+    public static void runFromTGDFile(String tgdsPath, String rowName,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, int scaleFactor, String dataStoreName,
+            RunOptions options) throws IOException, JRDFoxException {
+
+        String inputPath = getInputPath(tgdsPath);
+        String outputPath = options.isOutputEnabled() ? getMaterializationPath(tgdsPath) : null;
 
+        // the rule file is parsed before the stop watch starts, so that MAT_TOTAL does not include it
         Collection<TGD> fullTGDs;
+        long parseStart = System.nanoTime();
         try {
-            fullTGDs = parseDLGP(tgdsPath);
+            fullTGDs = parseDLGP(tgdsPath, options.isTGDCacheEnabled());
         } catch (Exception e) {
             System.out.println(String.format("Failed to parse %s with:\n%s", tgdsPath, e.getMessage()));
             return;
         }
+        long parseTime = System.nanoTime() - parseStart;
 
-        String rowName = getRowName(tgdsPath);
-        String inputPath = getInputPath(tgdsPath);
-        String outputPath = getMaterializationPath(tgdsPath);
         statsCollector.start(rowName);
-        int inputSize = generateNTriplesFromTGDs(fullTGDs, inputPath, scaleFactor);
-        statsCollector.tick(rowName, MaterializationStatColumns.MAT_GEN_TIME);
-        statsCollector.put(rowName, MaterializationStatColumns.MAT_GEN_SIZE, inputSize);
+        statsCollector.put(rowName, MaterializationStatColumns.MAT_PARSE_TIME, parseTime);
+
+        WatDivGenerator generator = new WatDivGenerator(fullTGDs, inputPath, scaleFactor);
+        WatDivCache.Entry cacheEntry = null;
+        WatDivCache cache = options.getWatDivCache();
+        if (cache != null) {
+            generator.writeSchema();
+            String key = cache.getKey(generator);
+            WatDivCache.CachedInput cachedInput = cache.lookup(key);
+            statsCollector.put(rowName, MaterializationStatColumns.MAT_GEN_CACHE_HIT, (cachedInput != null) ? 1 : 0);
+
+            if (cachedInput != null) {
+                // watdiv is not run, the cached data are loaded instead
+                try (WatDivCache.CachedInput input = cachedInput) {
+                    statsCollector.tick(rowName, MaterializationStatColumns.MAT_GEN_TIME);
+                    statsCollector.put(rowName, MaterializationStatColumns.MAT_GEN_SIZE, input.getSize());
+                    if (options.isInputKept()) {
+                        // the cached data are compressed, the kept input is not
+                        statsCollector.pause(rowName);
+                        try (InputStream in = ParallelDataLoader.open(input.getPath())) {
+                            Files.copy(in, Paths.get(inputPath), StandardCopyOption.REPLACE_EXISTING);
+                        } finally {
+                            statsCollector.resume(rowName);
+                        }
+                    }
+                    run(input.getPath(), fullTGDs, outputPath, statsCollector, rowName, dataStoreName, options);
+                }
+                return;
+            }
+            cacheEntry = cache.create(key);
+        }
+
+        // the generated triples are imported while watdiv is running, through a bounded buffer
+        PipedInputStream inputStream = new PipedInputStream(GENERATION_BUFFER_SIZE);
+        OutputStream generationStream = new PipedOutputStream(inputStream);
+        if (options.isInputKept()) {
+            generationStream = new TeeOutputStream(generationStream,
+                    new BufferedOutputStream(new FileOutputStream(inputPath)));
+        }
+        if (cacheEntry != null) {
+            generationStream = new TeeOutputStream(generationStream, cacheEntry);
+        }
+
+        FutureTask<Integer> generation = getGenerationTask(generator, generationStream, cacheEntry, statsCollector,
+                rowName);
+        new Thread(generation, "watdiv-" + rowName).start();
 
-        run(inputPath, fullTGDs, outputPath, statsCollector, rowName);
+        boolean completed;
+        try {
+            completed = run(inputStream, fullTGDs, outputPath, statsCollector, rowName, dataStoreName, options);
+        } finally {
+            // stop the generation if the materialization has failed
+            inputStream.close();
+        }
+        if (!completed) {
+            generation.cancel(true);
+            return;
+        }
+
+        try {
+            statsCollector.put(rowName, MaterializationStatColumns.MAT_GEN_SIZE, generation.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating " + inputPath);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to generate " + inputPath, e.getCause());
+        }
+    }
+
+    /**
+     * The task writing the data generated by watdiv into the stream, and
+     * committing them into the cache entry if there is one. Since the generation
+     * overlaps the data loading, its time is measured by the task itself.
+     */
+    protected static FutureTask<Integer> getGenerationTask(WatDivGenerator generator, OutputStream generationStream,
+            WatDivCache.Entry cacheEntry, StatisticsCollector<MaterializationStatColumns> statsCollector,
+            String rowName) {
+        return new FutureTask<>(() -> {
+            try {
+                int inputSize;
+                try (OutputStream out = generationStream) {
+                    long start = System.nanoTime();
+                    inputSize = generator.generate(out);
+                    statsCollector.put(rowName, MaterializationStatColumns.MAT_GEN_TIME,
+                            System.nanoTime() - start);
+                }
+                if (cacheEntry != null) {
+                    cacheEntry.commit(inputSize);
+                }
+                return inputSize;
+            } catch (Exception e) {
+                if (cacheEntry != null) {
+                    cacheEntry.abort();
+                }
+                throw e;
+            }
+        });
     }
 
-    public static void run(String inputPath, Collection<TGD> fullTGDs, String materializationPath,
+    /**
+     * Materialize the input stream, which is closed if the run exceeds its
+     * limits. Returns false if the run has been stopped by its limits.
+     */
+    public static boolean run(InputStream inputStream, Collection<TGD> fullTGDs, String materializationPath,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, String rowName, String dataStoreName,
+            RunOptions options) throws IOException, JRDFoxException {
+        return run(materializer -> materializer.materialize(inputStream, fullTGDs, materializationPath), () -> {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // the materializer fails on its own
+            }
+        }, fullTGDs, statsCollector, rowName, dataStoreName, options);
+    }
+
+    public static boolean run(String inputPath, Collection<TGD> fullTGDs, String materializationPath,
             StatisticsCollector<MaterializationStatColumns> statsCollector, String rowName)
-            throws FileNotFoundException, JRDFoxException {
+            throws IOException, JRDFoxException {
+        return run(inputPath, fullTGDs, materializationPath, statsCollector, rowName,
+                RDFoxMaterializer.DEFAULT_DATA_STORE_NAME, new RunOptions());
+    }
+
+    /**
+     * Materialize the input file. Returns false if the run has been stopped by
+     * its limits.
+     */
+    public static boolean run(String inputPath, Collection<TGD> fullTGDs, String materializationPath,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, String rowName, String dataStoreName,
+            RunOptions options) throws IOException, JRDFoxException {
+        return run(materializer -> materializer.materialize(inputPath, fullTGDs, materializationPath), null,
+                fullTGDs, statsCollector, rowName, dataStoreName, options);
+    }
+
+    /**
+     * A materialization of the input of a run by the given materializer
+     */
+    protected interface Materialization {
+        void materialize(RDFoxMaterializer materializer) throws JRDFoxException, IOException;
+    }
+
+    /**
+     * Run the materialization under the limits given by --timeout and
+     * --memory-limit. A run exceeding its limits, or the JVM heap, is
+     * interrupted, its data store is cleared and its row is marked with
+     * TIMEOUT or OOM instead of failing the batch. Returns whether the run has
+     * completed.
+     */
+    protected static boolean run(Materialization materialization, Runnable cancellation, Collection<TGD> fullTGDs,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, String rowName, String dataStoreName,
+            RunOptions options) throws IOException, JRDFoxException {
         statsCollector.resume(rowName);
-        RDFoxMaterializer materializer = new RDFoxMaterializer();
-        materializer.setStatsCollector(rowName, statsCollector);
-        statsCollector.tick(rowName, MaterializationStatColumns.MAT_INIT_TIME);
-        statsCollector.put(rowName, MaterializationStatColumns.MAT_FTGD_NB, fullTGDs.size());
+        try (MemorySampler memorySampler = new MemorySampler();
+                RDFoxMaterializer materializer = createMaterializer(statsCollector, rowName, dataStoreName, options);
+                RunWatchdog watchdog = new RunWatchdog(materializer, options.getTimeout(), options.getMemoryLimit())) {
+            if (cancellation != null) {
+                watchdog.addCancellation(cancellation);
+            }
+            statsCollector.tick(rowName, MaterializationStatColumns.MAT_INIT_TIME);
+            statsCollector.put(rowName, MaterializationStatColumns.MAT_FTGD_NB, fullTGDs.size());
+            statsCollector.put(rowName, MaterializationStatColumns.MAT_THREADS,
+                    RDFoxServer.getInstance().getNumberOfThreads());
+
+            try {
+                materialization.materialize(materializer);
+            } catch (JRDFoxException | IOException | OutOfMemoryError e) {
+                watchdog.close();
+                RunWatchdog.Status status = (e instanceof OutOfMemoryError) ? RunWatchdog.Status.OOM
+                        : watchdog.getStatus();
+                if (status == RunWatchdog.Status.OK) {
+                    throw e;
+                }
+                stopRun(materializer, status, statsCollector, rowName);
+                if (e instanceof OutOfMemoryError) {
+                    checkFreeHeap((OutOfMemoryError) e, rowName);
+                }
+                return false;
+            }
+
+            // a run whose input has been cancelled may end without error
+            watchdog.close();
+            if (watchdog.getStatus() != RunWatchdog.Status.OK) {
+                stopRun(materializer, watchdog.getStatus(), statsCollector, rowName);
+                return false;
+            }
+            putMemoryPeaks(memorySampler, statsCollector, rowName);
+            statsCollector.put(rowName, MaterializationStatColumns.MAT_STATUS, RunWatchdog.Status.OK.name());
+            return true;
+        }
+    }
+
+    /**
+     * Record the status of a stopped run and clear its data store, so that
+     * the next runs have its memory
+     */
+    protected static void stopRun(RDFoxMaterializer materializer, RunWatchdog.Status status,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, String rowName) {
+        statsCollector.stop(rowName, MaterializationStatColumns.MAT_TOTAL);
+        statsCollector.put(rowName, MaterializationStatColumns.MAT_STATUS, status.name());
+        System.out.println(String.format("The run %s has been stopped: %s", rowName, status));
+        try {
+            materializer.reclaim();
+        } catch (JRDFoxException e) {
+            System.out.println(String.format("Failed to clear the data store of %s: %s", rowName, e.getMessage()));
+        }
+    }
 
-        materializer.materialize(inputPath, fullTGDs, materializationPath);
+    /**
+     * Collect the heap given back by the run that ran out of memory, and give
+     * up the next runs if it is not enough for them
+     */
+    protected static void checkFreeHeap(OutOfMemoryError error, String rowName) {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+        if (freeHeap < MIN_FREE_HEAP_RATIO * runtime.maxMemory()) {
+            System.out.println(String.format("Only %d MB of heap are free after the run %s, the next runs are "
+                    + "not started", freeHeap >> 20, rowName));
+            throw error;
+        }
+    }
+
+    protected static void putMemoryPeaks(MemorySampler memorySampler,
+            StatisticsCollector<MaterializationStatColumns> statsCollector, String rowName) {
+        memorySampler.close();
+        statsCollector.put(rowName, MaterializationStatColumns.MAT_HEAP_PEAK, memorySampler.getHeapPeak());
+        statsCollector.put(rowName, MaterializationStatColumns.MAT_OFF_HEAP_PEAK, memorySampler.getOffHeapPeak());
+    }
+
+    /**
+     * Create a materializer on the data store configured by the options
+     */
+    protected static RDFoxMaterializer createMaterializer(StatisticsCollector<MaterializationStatColumns> statsCollector,
+            String rowName, String dataStoreName, RunOptions options) throws JRDFoxException {
+        int partitionCount = options.getPartitionCount();
+        RDFoxMaterializer materializer = (partitionCount > 0) ? new ComponentMaterializer(dataStoreName, partitionCount)
+                : new RDFoxMaterializer(dataStoreName);
+        materializer.setStatsCollector(rowName, statsCollector);
+        materializer.setExportOptions(options.getExportOptions());
+        materializer.setLoadThreads(options.getLoadThreads());
+        materializer.setSharedBody(options.isSharedBody());
+        materializer.setPruning(options.isPruning());
+        if (options.getStrataDirectory() != null) {
+            materializer.setStrataPath(
+                    Paths.get(options.getStrataDirectory()).resolve(rowName + "-strata.csv").toString());
+        }
+        if (options.getProgressDirectory() != null) {
+            materializer.setProgress(
+                    Paths.get(options.getProgressDirectory()).resolve(rowName + "-progress.csv").toString(),
+                    options.getProgressInterval(), options.isProgressPrinting());
+        }
+        return materializer;
     }
 
     public static Collection<TGD> parseDLGP(String tgdsPath) throws Exception {
+        return parseDLGP(tgdsPath, true);
+    }
+
+    /**
+     * Returns the full TGDs of the rule file, from its binary cache when it is
+     * enabled and up to date
+     */
+    public static Collection<TGD> parseDLGP(String tgdsPath, boolean isCacheEnabled) throws Exception {
+        if (isCacheEnabled) {
+            try {
+                Collection<TGD> cachedTGDs = TGDCache.load(tgdsPath);
+                if (cachedTGDs != null) {
+                    return cachedTGDs;
+                }
+            } catch (RuntimeException e) {
+                // a cache that can not be decoded is deleted, and the rule file is parsed again
+                System.out.println(String.format("The cache of %s can not be decoded: %s", tgdsPath, e));
+                Files.deleteIfExists(TGDCache.getCachePath(tgdsPath));
+            }
+        }
+
         System.out.println(String.format("Parsing %s ...", tgdsPath));
         DLGPIO parser = new DLGPIO(tgdsPath, false);
 
@@ -152,6 +809,10 @@ public class App {
                 fullTGDs.add((TGD) dependency);
             }
         }
+
+        if (isCacheEnabled) {
+            TGDCache.write(tgdsPath, fullTGDs);
+        }
         return fullTGDs;
     }
 
@@ -163,6 +824,10 @@ public class App {
         return Paths.get(tgdPath).getParent().resolve(FilenameUtils.getBaseName(tgdPath) + "-input.nt").toString();
     }
 
+    public static String getSweepPath(String tgdPath) {
+        return Paths.get(tgdPath).getParent().resolve(FilenameUtils.getBaseName(tgdPath) + "-sweep.csv").toString();
+    }
+
     public static String getMaterializationPath(String tgdPath) {
         String result = Paths.get(tgdPath).getParent().resolve(FilenameUtils.getBaseName(tgdPath) + "-mat.nt")
                 .toString();
@@ -170,19 +835,88 @@ public class App {
         return result;
     }
 
+    /**
+     * Add the options of the file given by --config that are not given on the
+     * command line
+     */
+    public static void loadConfig(Properties options) throws IOException {
+        if (!options.containsKey(CONFIG_OPTION)) {
+            return;
+        }
+        Properties config = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(getAbsolutePath(options.getProperty(CONFIG_OPTION))),
+                StandardCharsets.UTF_8)) {
+            config.load(reader);
+        }
+        for (String name : config.stringPropertyNames()) {
+            options.putIfAbsent(name, config.getProperty(name));
+        }
+    }
+
+    /**
+     * Give the RDFox parameters of the options to the server, before it is
+     * started
+     */
+    public static void configureServer(Properties options) {
+        Map<String, String> serverParameters = new HashMap<>();
+        Map<String, String> dataStoreParameters = new HashMap<>();
+        for (String name : options.stringPropertyNames()) {
+            if (name.startsWith(SERVER_PARAMETER_PREFIX)) {
+                serverParameters.put(name.substring(SERVER_PARAMETER_PREFIX.length()), options.getProperty(name));
+            } else if (name.startsWith(STORE_PARAMETER_PREFIX)) {
+                dataStoreParameters.put(name.substring(STORE_PARAMETER_PREFIX.length()), options.getProperty(name));
+            }
+        }
+        if (options.containsKey(THREADS_OPTION)) {
+            serverParameters.put("num-threads", options.getProperty(THREADS_OPTION));
+        }
+        if (options.containsKey(STORE_TYPE_OPTION)) {
+            dataStoreParameters.put("type", options.getProperty(STORE_TYPE_OPTION));
+        }
+        if (options.containsKey(INIT_RESOURCE_CAPACITY_OPTION)) {
+            dataStoreParameters.put("init-resource-capacity", options.getProperty(INIT_RESOURCE_CAPACITY_OPTION));
+        }
+        if (options.containsKey(INIT_TUPLE_CAPACITY_OPTION)) {
+            dataStoreParameters.put("init-tuple-capacity", options.getProperty(INIT_TUPLE_CAPACITY_OPTION));
+        }
+        RDFoxServer.configure(serverParameters, dataStoreParameters);
+    }
+
+    /**
+     * Move the options given as --<name> <value> into the properties and return
+     * the remaining arguments
+     */
+    public static String[] parseOptions(String[] args, Properties options) {
+        List<String> positionals = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith(OPTION_PREFIX) && i + 1 < args.length) {
+                options.setProperty(args[i].substring(OPTION_PREFIX.length()), args[++i]);
+            } else {
+                positionals.add(args[i]);
+            }
+        }
+        return positionals.toArray(new String[0]);
+    }
+
     public static StatisticsLogger getStatisticsLogger(StatisticsCollector statsCollector, String inputDirectory)
             throws FileNotFoundException {
+        return getStatisticsLogger(statsCollector, inputDirectory, new Properties());
+    }
+
+    public static StatisticsLogger getStatisticsLogger(StatisticsCollector statsCollector, String inputDirectory,
+            Properties options) throws FileNotFoundException {
 
         StatisticsLogger statsLogger;
         if (inputDirectory != null) {
             String statsFilePath = Paths.get(inputDirectory).resolve(STATS_FILENAME).toString();
             new File(statsFilePath).delete();
             PrintStream statsStream = new PrintStream(new FileOutputStream(statsFilePath, true));
-            statsLogger = new StatisticsLogger(statsStream, statsCollector);
+            statsLogger = new StatisticsLogger(statsStream, statsCollector, options);
         } else {
-            statsLogger = new StatisticsLogger(System.out, statsCollector);
+            statsLogger = new StatisticsLogger(System.out, statsCollector, options);
         }
         statsLogger.setSortedHeader(Arrays.asList(MaterializationStatColumns.values()));
+        statsLogger.setPrintingResources("on".equals(options.getProperty(PHASE_RESOURCES_OPTION)));
 
         return statsLogger;
     }
@@ -0,0 +1,711 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tech.oxfordsemantic.jrdfox.client.UpdateType;
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+import tech.oxfordsemantic.jrdfox.logic.datalog.Rule;
+import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+
+/**
+ * Materialize independently the connected components of the predicate
+ * dependency graph of the TGDs.
+ *
+ * The components are gathered into partitions, each of them being materialized
+ * concurrently in its own data store with its TGDs. The N-Triples input is
+ * routed while it is read: each fact goes to the partition of its predicate, or
+ * of its class for the rdf:type facts, and the facts of the predicates used by
+ * no TGD are spread over the partitions. The partitions sharing no predicate,
+ * the materialization is the concatenation of their exports.
+ *
+ * The inputs that are not line based and the DLGP or CSV facts are
+ * materialized without partitioning, which is printed.
+ *
+ * An update is routed to the partitions like the input, each partition
+ * updating its own materialization. An update that can not be routed, since
+ * it adds a TGD joining several partitions or using a predicate whose facts
+ * are spread over them, first merges the partitions into the data store of
+ * the materializer.
+ */
+public class ComponentMaterializer extends RDFoxMaterializer {
+
+    private final static byte[] RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>"
+            .getBytes(StandardCharsets.US_ASCII);
+    private final static int PIPE_SIZE = 8 << 20;
+    private final static int BUFFER_SIZE = 1 << 20;
+
+    protected final int maxPartitionCount;
+    // the materializers of the partitions of the last loading, or null if it was not partitioned,
+    // which are read by the thread interrupting a run
+    protected volatile List<RDFoxMaterializer> partitions;
+
+    // the partitions of the binary predicates and of the classes, given by their names
+    private final Map<String, Integer> predicatePartitions = new HashMap<>();
+    private final Map<String, Integer> classPartitions = new HashMap<>();
+
+    public ComponentMaterializer(String dataStoreName, int maxPartitionCount) throws JRDFoxException {
+        super(dataStoreName);
+        this.maxPartitionCount = maxPartitionCount;
+    }
+
+    @Override
+    protected void load(InputStream inputData, boolean lineBased, Collection<TGD> fullTGDs)
+            throws JRDFoxException, IOException {
+        closePartitions();
+        if (!lineBased) {
+            System.out.println(String.format(
+                    "The input of %s is not line based, so it is materialized without partitioning", statsRowName));
+            super.load(inputData, lineBased, fullTGDs);
+            return;
+        }
+
+        Map<Predicate, List<TGD>> components = getComponents(fullTGDs);
+        List<List<TGD>> partitionTGDs = partition(components.values());
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_COMPONENT_NB, components.size());
+
+        partitions = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(partitionTGDs.size());
+        List<Future<Void>> loads = new ArrayList<>();
+        OutputStream[] routes = new OutputStream[partitionTGDs.size()];
+        try {
+            for (int i = 0; i < partitionTGDs.size(); i++) {
+                RDFoxMaterializer partition = createPartition(i);
+                partitions.add(partition);
+
+                PipedInputStream partitionInput = new PipedInputStream(PIPE_SIZE);
+                routes[i] = new BufferedOutputStream(new PipedOutputStream(partitionInput), BUFFER_SIZE);
+                List<TGD> tgds = partitionTGDs.get(i);
+                loads.add(executor.submit(() -> {
+                    try (InputStream in = partitionInput) {
+                        partition.load(in, true, tgds);
+                    }
+                    return null;
+                }));
+            }
+
+            try {
+                route(inputData, routes);
+                for (OutputStream out : routes) {
+                    out.close();
+                }
+                // the partitions go on loading what is left in their pipes, so the loading and the reasoning overlap
+                statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DATA_LOAD_TIME);
+            } catch (IOException e) {
+                // a failed partition stops reading its input, so its own error is reported first
+                for (OutputStream out : routes) {
+                    closeQuietly(out);
+                }
+                for (Future<Void> load : loads) {
+                    waitLoad(load);
+                }
+                throw e;
+            }
+
+            for (Future<Void> load : loads) {
+                waitLoad(load);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        loadedFactCount = 0;
+        loadStoreMemory = 0;
+        for (RDFoxMaterializer partition : partitions) {
+            loadedFactCount += partition.loadedFactCount;
+            loadStoreMemory += partition.loadStoreMemory;
+        }
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_TIME);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_LOADED_FACTS, loadedFactCount);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_LOAD_STORE_MEMORY, loadStoreMemory);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_DATA_LOAD_THROUGHPUT,
+                getThroughput(loadedFactCount, getTime(MaterializationStatColumns.MAT_DATA_LOAD_TIME)));
+    }
+
+    /**
+     * load the data that are not routed to partitions, like the facts of a
+     * DLGP or CSV file, into the data store of the materializer
+     */
+    @Override
+    protected void load(DataImport dataImport, Collection<TGD> fullTGDs) throws JRDFoxException, IOException {
+        closePartitions();
+        System.out.println(String.format(
+                "The facts of %s are not routed, so they are materialized without partitioning", statsRowName));
+        super.load(dataImport, fullTGDs);
+    }
+
+    /**
+     * export the IDB facts of every partition, one after the other, and returns
+     * their number
+     */
+    @Override
+    protected long export(OutputStream outputStream, OutputStream tupleStream) throws JRDFoxException, IOException {
+        if (partitions == null) {
+            return super.export(outputStream, tupleStream);
+        }
+
+        long size = 0;
+        for (RDFoxMaterializer partition : partitions) {
+            size += partition.export(outputStream, tupleStream);
+        }
+        return size;
+    }
+
+    @Override
+    protected boolean hasTupleTables() {
+        if (partitions == null) {
+            return super.hasTupleTables();
+        }
+
+        for (RDFoxMaterializer partition : partitions) {
+            if (partition.hasTupleTables()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the memory used by the data stores of the partitions, or by the data
+     * store of the materializer if the last loading was not partitioned
+     */
+    @Override
+    protected long getStoreMemory() throws JRDFoxException {
+        List<RDFoxMaterializer> partitions = this.partitions;
+        if (partitions == null) {
+            return super.getStoreMemory();
+        }
+
+        long result = 0;
+        for (RDFoxMaterializer partition : partitions) {
+            result += partition.getStoreMemory();
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> getDataStoreNames() {
+        List<String> names = new ArrayList<>(super.getDataStoreNames());
+        List<RDFoxMaterializer> partitions = this.partitions;
+        if (partitions != null) {
+            for (RDFoxMaterializer partition : partitions) {
+                names.add(partition.getDataStoreName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Interrupt the partitions, whose failed loads stop the routing of the input
+     */
+    @Override
+    public void interrupt() throws JRDFoxException {
+        super.interrupt();
+        List<RDFoxMaterializer> partitions = this.partitions;
+        if (partitions != null) {
+            for (RDFoxMaterializer partition : partitions) {
+                partition.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void reclaim() throws JRDFoxException {
+        List<RDFoxMaterializer> partitions = this.partitions;
+        if (partitions != null) {
+            for (RDFoxMaterializer partition : partitions) {
+                partition.reclaim();
+            }
+        }
+        closePartitions();
+        super.reclaim();
+    }
+
+    /**
+     * Update the partitions with the facts and TGDs routed to them, one after
+     * the other, or the merged partitions if the update can not be routed
+     */
+    @Override
+    public long update(String addedDataFile, String removedDataFile, Collection<TGD> addedFullTGDs,
+            Collection<TGD> removedFullTGDs, OutputStream addedFactsStream, OutputStream removedFactsStream)
+            throws JRDFoxException, IOException {
+        List<RDFoxMaterializer> partitions = this.partitions;
+        if (partitions == null) {
+            return super.update(addedDataFile, removedDataFile, addedFullTGDs, removedFullTGDs, addedFactsStream,
+                    removedFactsStream);
+        }
+
+        List<List<TGD>> addedTGDs = routeTGDs(addedFullTGDs, partitions.size());
+        if (addedTGDs == null || !isRoutable(addedDataFile) || !isRoutable(removedDataFile)) {
+            mergePartitions();
+            statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_LOAD_TIME);
+            return super.update(addedDataFile, removedDataFile, addedFullTGDs, removedFullTGDs, addedFactsStream,
+                    removedFactsStream);
+        }
+        // the removed TGDs that can not be routed are not in any partition
+        List<List<TGD>> removedTGDs = newPartitionLists(partitions.size());
+        if (removedFullTGDs != null) {
+            for (TGD tgd : removedFullTGDs) {
+                Integer partition = getPartition(tgd);
+                if (partition != null) {
+                    removedTGDs.get(partition).add(tgd);
+                }
+            }
+        }
+
+        List<Path> addedFiles = null;
+        List<Path> removedFiles = null;
+        try {
+            addedFiles = routeFile(addedDataFile, partitions.size());
+            removedFiles = routeFile(removedDataFile, partitions.size());
+            statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_LOAD_TIME);
+
+            long addedSize = 0;
+            long removedSize = 0;
+            for (int i = 0; i < partitions.size(); i++) {
+                String partitionAddedFile = getRoutedFile(addedFiles, i);
+                String partitionRemovedFile = getRoutedFile(removedFiles, i);
+                List<TGD> partitionAddedTGDs = addedTGDs.get(i);
+                List<TGD> partitionRemovedTGDs = removedTGDs.get(i);
+                if (partitionAddedFile == null && partitionRemovedFile == null && partitionAddedTGDs.isEmpty()
+                        && partitionRemovedTGDs.isEmpty()) {
+                    continue;
+                }
+
+                // each partition measures its update on its own row
+                RDFoxMaterializer partition = partitions.get(i);
+                statsCollector.start(partition.statsRowName);
+                partition.update(partitionAddedFile, partitionRemovedFile, partitionAddedTGDs, partitionRemovedTGDs,
+                        addedFactsStream, removedFactsStream);
+                addedSize += getCount(partition.statsRowName, MaterializationStatColumns.MAT_DELTA_ADDED_SIZE);
+                removedSize += getCount(partition.statsRowName, MaterializationStatColumns.MAT_DELTA_REMOVED_SIZE);
+            }
+            statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_TIME);
+
+            statsCollector.put(statsRowName, MaterializationStatColumns.MAT_DELTA_ADDED_SIZE, addedSize);
+            statsCollector.put(statsRowName, MaterializationStatColumns.MAT_DELTA_REMOVED_SIZE, removedSize);
+            return addedSize + removedSize;
+        } finally {
+            deleteFiles(addedFiles);
+            deleteFiles(removedFiles);
+        }
+    }
+
+    /**
+     * Returns the TGDs grouped by the partition of their predicates, or null if
+     * a TGD has predicates of several partitions, or a predicate whose facts
+     * are not routed to a single partition
+     */
+    protected List<List<TGD>> routeTGDs(Collection<TGD> tgds, int partitionCount) {
+        List<List<TGD>> result = newPartitionLists(partitionCount);
+        if (tgds != null) {
+            for (TGD tgd : tgds) {
+                Integer partition = getPartition(tgd);
+                if (partition == null) {
+                    return null;
+                }
+                result.get(partition).add(tgd);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the partition of every predicate of the TGD, or null if they are not all
+     * in the same partition
+     */
+    protected Integer getPartition(TGD tgd) {
+        Integer partition = null;
+        for (Atom atom : tgd.getAtoms()) {
+            Predicate predicate = atom.getPredicate();
+            Integer atomPartition = ((predicate.getArity() == 1) ? classPartitions : predicatePartitions)
+                    .get(predicate.getName());
+            if (atomPartition == null || (partition != null && !partition.equals(atomPartition))) {
+                return null;
+            }
+            partition = atomPartition;
+        }
+        return partition;
+    }
+
+    private static List<List<TGD>> newPartitionLists(int partitionCount) {
+        List<List<TGD>> result = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            result.add(new ArrayList<>());
+        }
+        return result;
+    }
+
+    /**
+     * whether the facts of the data file, which can be null, can be routed to
+     * the partitions
+     */
+    private static boolean isRoutable(String dataFile) {
+        return dataFile == null || ParallelDataLoader.isLineBased(dataFile);
+    }
+
+    /**
+     * write the facts of the data file into one temporary N-Triples file per
+     * partition, or returns null if the data file is null
+     */
+    protected List<Path> routeFile(String dataFile, int partitionCount) throws IOException {
+        if (dataFile == null) {
+            return null;
+        }
+
+        List<Path> files = new ArrayList<>();
+        OutputStream[] routes = new OutputStream[partitionCount];
+        try (InputStream in = ParallelDataLoader.open(dataFile)) {
+            for (int i = 0; i < partitionCount; i++) {
+                Path file = Files.createTempFile("gsat-partition-" + i + "-", ".nt");
+                files.add(file);
+                routes[i] = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+            }
+            route(in, routes);
+        } catch (IOException | RuntimeException e) {
+            for (OutputStream out : routes) {
+                closeQuietly(out);
+            }
+            deleteFiles(files);
+            throw e;
+        }
+        for (OutputStream out : routes) {
+            out.close();
+        }
+        return files;
+    }
+
+    /**
+     * the routed file of the partition, or null if it has no fact
+     */
+    private static String getRoutedFile(List<Path> files, int index) throws IOException {
+        if (files == null || Files.size(files.get(index)) == 0) {
+            return null;
+        }
+        return files.get(index).toString();
+    }
+
+    private static void deleteFiles(List<Path> files) throws IOException {
+        if (files != null) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private long getCount(String rowName, MaterializationStatColumns col) {
+        Object count = statsCollector.get(rowName, col);
+        return (count instanceof Number) ? ((Number) count).longValue() : 0;
+    }
+
+    /**
+     * Load the EDB facts and the TGDs of the partitions into the data store of
+     * the materializer, materialize them and close the partitions
+     */
+    protected void mergePartitions() throws JRDFoxException, IOException {
+        List<RDFoxMaterializer> partitions = this.partitions;
+        reset();
+        List<TGD> tgds = new ArrayList<>();
+        List<TGD> pruned = new ArrayList<>();
+        for (RDFoxMaterializer partition : partitions) {
+            tgds.addAll(partition.loadedTGDs);
+            pruned.addAll(partition.prunedTGDs);
+            // the tuples of the tables are imported into them
+            tupleTables.addAll(partition.tupleTables);
+            for (String tableName : partition.tupleTables) {
+                createTupleTable(tableName);
+            }
+        }
+        Collection<Rule> rules = translate(tgds);
+
+        // the facts of every graph are exported as N-Quads
+        HashMap<String, String> exportParameters = new HashMap<String, String>();
+        exportParameters.put("fact-domain", "EDB");
+        for (RDFoxMaterializer partition : partitions) {
+            Path file = Files.createTempFile("gsat-partition-", ".nq");
+            try {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)) {
+                    partition.dsConn.exportData(partition.prefixes, out, "application/n-quads", exportParameters);
+                }
+                try (InputStream in = ParallelDataLoader.open(file.toString())) {
+                    dsConn.importData(UpdateType.ADDITION, prefixes, in);
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+        dsConn.addRules(rules);
+
+        loadedTGDs = tgds;
+        prunedTGDs = pruned;
+        closePartitions();
+    }
+
+    @Override
+    public void close() {
+        closePartitions();
+        super.close();
+    }
+
+    /**
+     * Group the connected components of the TGDs into at most
+     * maxPartitionCount partitions with balanced numbers of TGDs, and record
+     * the partition of each predicate
+     */
+    protected List<List<TGD>> partition(Collection<List<TGD>> tgdComponents) {
+        List<List<TGD>> components = new ArrayList<>(tgdComponents);
+        components.sort(Comparator.comparingInt((List<TGD> c) -> c.size()).reversed());
+
+        // the largest components first, each one in the smallest partition
+        int partitionCount = Math.max(1, Math.min(maxPartitionCount, components.size()));
+        List<List<TGD>> partitionTGDs = newPartitionLists(partitionCount);
+        for (List<TGD> component : components) {
+            List<TGD> smallest = partitionTGDs.stream().min(Comparator.comparingInt(List::size)).get();
+            smallest.addAll(component);
+        }
+
+        predicatePartitions.clear();
+        classPartitions.clear();
+        for (int i = 0; i < partitionCount; i++) {
+            for (TGD tgd : partitionTGDs.get(i)) {
+                for (Atom atom : tgd.getAtoms()) {
+                    Predicate predicate = atom.getPredicate();
+                    Map<String, Integer> partitions = (predicate.getArity() == 1) ? classPartitions
+                            : predicatePartitions;
+                    partitions.put(predicate.getName(), i);
+                    // the triples of a reified tuple are routed by their argument properties, to the same partition
+                    if (RDFoxFactory.isReified(predicate)) {
+                        for (int j = 0; j < predicate.getArity(); j++) {
+                            predicatePartitions.put(RDFoxFactory.getArgumentProperty(predicate, j), i);
+                        }
+                    }
+                }
+            }
+        }
+        return partitionTGDs;
+    }
+
+    /**
+     * the TGDs grouped by the connected components of their predicates, using a
+     * union-find over the predicates
+     */
+    protected static Map<Predicate, List<TGD>> getComponents(Collection<TGD> fullTGDs) {
+        Map<Predicate, Predicate> parents = new HashMap<>();
+        for (TGD tgd : fullTGDs) {
+            Atom[] atoms = tgd.getAtoms();
+            for (Atom atom : atoms) {
+                union(parents, atoms[0].getPredicate(), atom.getPredicate());
+            }
+        }
+
+        Map<Predicate, List<TGD>> components = new HashMap<>();
+        for (TGD tgd : fullTGDs) {
+            Atom[] atoms = tgd.getAtoms();
+            Predicate root = (atoms.length > 0) ? find(parents, atoms[0].getPredicate()) : null;
+            components.computeIfAbsent(root, r -> new ArrayList<>()).add(tgd);
+        }
+        return components;
+    }
+
+    private static Predicate find(Map<Predicate, Predicate> parents, Predicate predicate) {
+        Predicate root = predicate;
+        Predicate parent;
+        while ((parent = parents.getOrDefault(root, root)) != root) {
+            root = parent;
+        }
+        // path compression
+        while (predicate != root) {
+            Predicate next = parents.getOrDefault(predicate, predicate);
+            parents.put(predicate, root);
+            predicate = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Predicate, Predicate> parents, Predicate first, Predicate second) {
+        Predicate firstRoot = find(parents, first);
+        Predicate secondRoot = find(parents, second);
+        if (firstRoot != secondRoot) {
+            parents.put(secondRoot, firstRoot);
+        }
+    }
+
+    /**
+     * the materializer of a partition, working on its own data store
+     */
+    protected RDFoxMaterializer createPartition(int index) throws JRDFoxException {
+        RDFoxMaterializer partition = new RDFoxMaterializer(dataStoreName + "-" + index);
+        partition.setExportOptions(exportOptions);
+        partition.setLoadThreads(loadThreads);
+        partition.setSharedBody(sharedBody);
+        partition.setPruning(pruning);
+        if (progressPath != null) {
+            partition.setProgress(progressPath.replaceFirst("(\\.csv)?$", "-" + index + "$1"), progressInterval,
+                    progressPrinting);
+        }
+
+        // the partitions have their own rows, since their stop watches run concurrently
+        String rowName = statsRowName + "/" + index;
+        partition.setStatsCollector(rowName, statsCollector);
+        statsCollector.start(rowName);
+        return partition;
+    }
+
+    /**
+     * write each line of the input into the output of its partition
+     */
+    protected void route(InputStream in, OutputStream[] routes) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = 0;
+
+        while (true) {
+            int read = in.read(buffer, length, buffer.length - length);
+            boolean endOfInput = read < 0;
+            if (!endOfInput) {
+                length += read;
+            }
+
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    routeLine(buffer, lineStart, i + 1, routes);
+                    lineStart = i + 1;
+                }
+            }
+
+            if (endOfInput) {
+                if (lineStart < length) {
+                    routeLine(buffer, lineStart, length, routes);
+                }
+                return;
+            }
+
+            // keep the incomplete last line at the beginning of the buffer
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+        }
+    }
+
+    private void routeLine(byte[] line, int start, int end, OutputStream[] routes) throws IOException {
+        // skip the subject
+        int position = skipWhitespaces(line, start, end);
+        if (position == end || line[position] == '#') {
+            return;
+        }
+        position = skipWhitespaces(line, skipToken(line, position, end), end);
+
+        int predicateStart = position;
+        int predicateEnd = skipToken(line, predicateStart, end);
+        String key;
+        Integer partition;
+        if (isRDFType(line, predicateStart, predicateEnd)) {
+            int classStart = skipWhitespaces(line, predicateEnd, end);
+            int classEnd = skipToken(line, classStart, end);
+            key = getName(line, classStart, classEnd);
+            partition = classPartitions.get(key);
+        } else {
+            key = getName(line, predicateStart, predicateEnd);
+            partition = predicatePartitions.get(key);
+        }
+
+        // the facts used by no TGD are spread over the partitions, the same facts going to the same partition
+        int index = (partition != null) ? partition : Math.floorMod(key.hashCode(), routes.length);
+        routes[index].write(line, start, end - start);
+        if (line[end - 1] != '\n') {
+            routes[index].write('\n');
+        }
+    }
+
+    private static boolean isRDFType(byte[] line, int start, int end) {
+        return end - start == RDF_TYPE.length && Arrays.equals(line, start, end, RDF_TYPE, 0, RDF_TYPE.length);
+    }
+
+    /**
+     * the IRI of the token without its angle brackets
+     */
+    private static String getName(byte[] line, int start, int end) {
+        if (end - start >= 2 && line[start] == '<' && line[end - 1] == '>') {
+            return new String(line, start + 1, end - start - 2, StandardCharsets.UTF_8);
+        }
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static int skipWhitespaces(byte[] line, int position, int end) {
+        while (position < end && isWhitespace(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipToken(byte[] line, int position, int end) {
+        while (position < end && !isWhitespace(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static void waitLoad(Future<Void> load) throws IOException, JRDFoxException {
+        try {
+            load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while materializing the partitions");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JRDFoxException) {
+                throw (JRDFoxException) e.getCause();
+            }
+            throw new IOException("Failed to materialize a partition", e.getCause());
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the partition reading this output has already failed
+        }
+    }
+
+    private void closePartitions() {
+        List<RDFoxMaterializer> partitions = this.partitions;
+        if (partitions != null) {
+            this.partitions = null;
+            for (RDFoxMaterializer partition : partitions) {
+                partition.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+
+import tech.oxfordsemantic.jrdfox.Prefixes;
+import tech.oxfordsemantic.jrdfox.client.DataStoreConnection;
+import tech.oxfordsemantic.jrdfox.client.UpdateType;
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+import tech.oxfordsemantic.jrdfox.logic.Datatype;
+import tech.oxfordsemantic.jrdfox.logic.expression.Literal;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.Term;
+import uk.ac.ox.cs.pdq.fol.UntypedConstant;
+
+/**
+ * Import the facts of a DLGP or CSV file, whose predicates may have any arity.
+ * The facts are translated like the atoms of the rules by RDFoxFactory: the
+ * unary and binary facts are triples, the nullary and ternary ones are tuples
+ * of the table of their predicate. They are imported by batches written in the
+ * datalog syntax of RDFox, the tables of the predicates of a batch being
+ * created before it. The facts of more arguments are reified by a SPARQL
+ * update per predicate of the batch, which binds their tuple ids to the same
+ * skolem terms as the rules.
+ *
+ * A DLGP file gives its facts as atoms p(a, b, c) separated by commas and
+ * ended by a dot, the rules, queries and constraints being skipped. A CSV file
+ * gives a fact per line of the predicate named by the file, e.g. p.csv. The
+ * quotes of the strings and the angle brackets of the IRIs are removed from the
+ * constants, as the parser of the rules does.
+ */
+public class FactLoader {
+
+    public final static int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    private final DataStoreConnection dsConn;
+    private final Prefixes prefixes;
+    private final int batchSize;
+    // the predicates of the facts, by name and arity
+    private final Map<String, Predicate> predicates = new HashMap<>();
+    private final Set<String> tupleTables = new LinkedHashSet<>();
+    private final List<String> newTupleTables = new ArrayList<>();
+    private final StringBuilder batch = new StringBuilder();
+    // the values of the reified facts of the batch, by predicate
+    private final Map<Predicate, StringBuilder> reifiedBatches = new LinkedHashMap<>();
+    private int batchFactCount = 0;
+    private long factCount = 0;
+
+    public FactLoader(DataStoreConnection dsConn, Prefixes prefixes, int batchSize) {
+        this.dsConn = dsConn;
+        this.prefixes = prefixes;
+        this.batchSize = batchSize;
+    }
+
+    public FactLoader(DataStoreConnection dsConn, Prefixes prefixes) {
+        this(dsConn, prefixes, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * whether the file, possibly compressed, is a DLGP or CSV file of facts
+     */
+    public static boolean isFactFile(String inputDataFile) {
+        String name = getUncompressedName(inputDataFile);
+        return name.endsWith(".dlgp") || name.endsWith(".csv");
+    }
+
+    /**
+     * Import the facts of the file and returns their number
+     */
+    public long load(String inputDataFile) throws IOException, JRDFoxException {
+        String name = getUncompressedName(inputDataFile);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(ParallelDataLoader.open(inputDataFile), StandardCharsets.UTF_8))) {
+            if (name.endsWith(".csv")) {
+                loadCSV(reader, FilenameUtils.getBaseName(name));
+            } else {
+                loadDLGP(reader);
+            }
+        }
+        flush();
+        return factCount;
+    }
+
+    /**
+     * the names of the tuple tables of the imported facts
+     */
+    public Set<String> getTupleTables() {
+        return Collections.unmodifiableSet(tupleTables);
+    }
+
+    protected void loadCSV(BufferedReader reader, String predicateName) throws IOException, JRDFoxException {
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            add(predicateName, splitCSV(line));
+        }
+    }
+
+    /**
+     * read the statements ended by a dot, keeping the facts, the prefixes
+     * being not supported
+     */
+    protected void loadDLGP(Reader reader) throws IOException, JRDFoxException {
+        StringBuilder statement = new StringBuilder();
+        int depth = 0;
+        char quote = 0;
+        for (int c = reader.read(); c >= 0; c = reader.read()) {
+            if (quote != 0) {
+                statement.append((char) c);
+                if (c == '\\' && quote == '"') {
+                    int escaped = reader.read();
+                    if (escaped >= 0) {
+                        statement.append((char) escaped);
+                    }
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '%' || (c == '@' && depth == 0)) {
+                // a comment, a section like @facts or a directive runs until the end of the line
+                while (c >= 0 && c != '\n') {
+                    c = reader.read();
+                }
+                statement.append(' ');
+            } else if (c == '"') {
+                quote = '"';
+                statement.append((char) c);
+            } else if (c == '<') {
+                quote = '>';
+                statement.append((char) c);
+            } else if (c == '.' && depth == 0) {
+                addStatement(statement.toString());
+                statement.setLength(0);
+            } else {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+                statement.append((char) c);
+            }
+        }
+        addStatement(statement.toString());
+    }
+
+    private void addStatement(String statement) throws IOException, JRDFoxException {
+        statement = statement.trim();
+        // skip the label
+        if (statement.startsWith("[")) {
+            statement = statement.substring(statement.indexOf(']') + 1).trim();
+        }
+        if (statement.isEmpty() || statement.contains(":-")) {
+            return;
+        }
+
+        int position = 0;
+        while (position < statement.length()) {
+            char c = statement.charAt(position);
+            if (c == ',' || Character.isWhitespace(c)) {
+                position++;
+                continue;
+            }
+
+            int nameEnd = skipTerm(statement, position);
+            if (nameEnd == position) {
+                throw new IOException(String.format("The statement %s is not a conjunction of facts", statement));
+            }
+            String predicateName = getSymbol(statement.substring(position, nameEnd).trim());
+            position = nameEnd;
+            while (position < statement.length() && Character.isWhitespace(statement.charAt(position))) {
+                position++;
+            }
+
+            List<String> arguments = new ArrayList<>();
+            if (position < statement.length() && statement.charAt(position) == '(') {
+                int end = skipArguments(statement, position + 1);
+                if (end == statement.length() || statement.charAt(end) != ')') {
+                    throw new IOException(String.format("The statement %s is not a conjunction of facts", statement));
+                }
+                String argumentList = statement.substring(position + 1, end);
+                int start = 0;
+                while (start < argumentList.length()) {
+                    int argumentEnd = skipTerm(argumentList, start);
+                    String argument = argumentList.substring(start, argumentEnd).trim();
+                    if (!argument.isEmpty()) {
+                        arguments.add(argument);
+                    }
+                    start = argumentEnd + 1;
+                }
+                position = end + 1;
+            }
+            add(predicateName, arguments);
+        }
+    }
+
+    /**
+     * Returns the end of the term starting at the position, which is a comma,
+     * a parenthesis or the end of the text
+     */
+    private static int skipTerm(String text, int position) {
+        char quote = 0;
+        for (int i = position; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == '\\' && quote == '"') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"') {
+                quote = '"';
+            } else if (c == '<') {
+                quote = '>';
+            } else if (c == ',' || c == '(' || c == ')') {
+                return i;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * Returns the position of the closing parenthesis of the arguments starting
+     * at the position
+     */
+    private static int skipArguments(String text, int position) {
+        int end = skipTerm(text, position);
+        while (end < text.length() && text.charAt(end) == ',') {
+            end = skipTerm(text, end + 1);
+        }
+        return end;
+    }
+
+    /**
+     * Returns the fields of a CSV line, which may be quoted with doubled quotes
+     * inside
+     */
+    protected static List<String> splitCSV(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * the constant without the quotes of a string or the angle brackets of an
+     * IRI
+     */
+    protected static String getSymbol(String token) {
+        if (token.length() >= 2 && ((token.charAt(0) == '"' && token.charAt(token.length() - 1) == '"')
+                || (token.charAt(0) == '<' && token.charAt(token.length() - 1) == '>'))) {
+            return token.substring(1, token.length() - 1);
+        }
+        return token;
+    }
+
+    protected void add(String predicateName, List<String> arguments) throws IOException, JRDFoxException {
+        Predicate predicate = predicates.computeIfAbsent(predicateName + "/" + arguments.size(),
+                k -> Predicate.create(predicateName, arguments.size()));
+        Term[] terms = new Term[arguments.size()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = UntypedConstant.create(getSymbol(arguments.get(i)));
+        }
+
+        Atom fact = Atom.create(predicate, terms);
+        try {
+            if (RDFoxFactory.isReified(predicate)) {
+                StringBuilder values = reifiedBatches.computeIfAbsent(predicate, p -> new StringBuilder());
+                values.append('(');
+                for (Term term : terms) {
+                    values.append(' ').append(RDFoxFactory.pdqTermAsRDFoxTerm(term).toString(Prefixes.s_emptyPrefixes));
+                }
+                values.append(" )\n");
+            } else {
+                batch.append(RDFoxFactory.pdqAtomAsRDFoxAtom(fact).toString(Prefixes.s_emptyPrefixes)).append(" .\n");
+            }
+        } catch (IllegalStateException e) {
+            throw new IOException(String.format("The fact %s can not be imported", fact), e);
+        }
+        if (RDFoxFactory.hasTupleTable(predicate) && tupleTables.add(predicateName)) {
+            newTupleTables.add(predicateName);
+        }
+
+        factCount++;
+        if (++batchFactCount >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * import the facts of the current batch, once the new tuple tables are
+     * created
+     */
+    protected void flush() throws JRDFoxException {
+        for (String tableName : newTupleTables) {
+            if (!dsConn.containsTupleTable(tableName)) {
+                dsConn.createTupleTable(tableName, new HashMap<String, String>());
+            }
+        }
+        newTupleTables.clear();
+
+        if (batch.length() > 0) {
+            dsConn.importData(UpdateType.ADDITION, prefixes,
+                    new ByteArrayInputStream(batch.toString().getBytes(StandardCharsets.UTF_8)));
+            batch.setLength(0);
+        }
+        for (Map.Entry<Predicate, StringBuilder> entry : reifiedBatches.entrySet()) {
+            dsConn.evaluateUpdate(prefixes, getReifiedUpdate(entry.getKey(), entry.getValue()),
+                    new HashMap<String, String>());
+        }
+        reifiedBatches.clear();
+        batchFactCount = 0;
+    }
+
+    /**
+     * the SPARQL update inserting the triples of the reified facts of the
+     * predicate, whose arguments are given as values
+     */
+    protected static String getReifiedUpdate(Predicate predicate, CharSequence values) {
+        StringBuilder triples = new StringBuilder();
+        List<String> variables = new ArrayList<>();
+        for (int i = 0; i < predicate.getArity(); i++) {
+            String variable = "?a" + i;
+            triples.append(String.format("?id <%s> %s . ", RDFoxFactory.getArgumentProperty(predicate, i), variable));
+            variables.add(variable);
+        }
+        String name = Literal.create(predicate.getName(), Datatype.XSD_STRING).toString(Prefixes.s_emptyPrefixes);
+        return String.format("INSERT { %s} WHERE { VALUES (%s) {\n%s} BIND(SKOLEM(%s, %s) AS ?id) }", triples,
+                String.join(" ", variables), values, name, String.join(", ", variables));
+    }
+
+    private static String getUncompressedName(String inputDataFile) {
+        return inputDataFile.endsWith(".gz") ? inputDataFile.substring(0, inputDataFile.length() - 3) : inputDataFile;
+    }
+}
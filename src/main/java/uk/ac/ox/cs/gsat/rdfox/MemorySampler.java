@@ -0,0 +1,91 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * Sample in a background thread the memory used by the JVM, and keep the
+ * peaks observed between the start and the closing of the sampler. The
+ * off-heap memory is the non-heap memory (metaspace, code cache, ...) plus
+ * the direct and mapped buffers. The memory allocated by RDFox in its native
+ * code is not visible to the JVM.
+ */
+public class MemorySampler implements AutoCloseable {
+
+    public final static long DEFAULT_PERIOD = 10;
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+    private final long period;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long heapPeak = 0;
+    private volatile long offHeapPeak = 0;
+
+    /**
+     * Start a sampler reading the memory usage every period in milliseconds
+     */
+    public MemorySampler(long period) {
+        this.period = period;
+        sample();
+        this.thread = new Thread(this::run, "memory-sampler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public MemorySampler() {
+        this(DEFAULT_PERIOD);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(period);
+            } catch (InterruptedException e) {
+                return;
+            }
+            sample();
+        }
+    }
+
+    protected synchronized void sample() {
+        heapPeak = Math.max(heapPeak, memoryBean.getHeapMemoryUsage().getUsed());
+
+        long offHeap = memoryBean.getNonHeapMemoryUsage().getUsed();
+        for (BufferPoolMXBean bufferPool : bufferPools) {
+            offHeap += Math.max(0, bufferPool.getMemoryUsed());
+        }
+        offHeapPeak = Math.max(offHeapPeak, offHeap);
+    }
+
+    /**
+     * the peak of the used heap, in bytes
+     */
+    public long getHeapPeak() {
+        return heapPeak;
+    }
+
+    /**
+     * the peak of the used off-heap memory, in bytes
+     */
+    public long getOffHeapPeak() {
+        return offHeapPeak;
+    }
+
+    /**
+     * Stop the sampling after a last sample
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+    }
+}
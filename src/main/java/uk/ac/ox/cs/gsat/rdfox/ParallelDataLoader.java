@@ -0,0 +1,197 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+import tech.oxfordsemantic.jrdfox.Prefixes;
+import tech.oxfordsemantic.jrdfox.client.DataStoreConnection;
+import tech.oxfordsemantic.jrdfox.client.UpdateType;
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+
+/**
+ * Import the data files into a data store.
+ *
+ * The line based files (N-Triples) are split at line boundaries into chunks,
+ * which are imported concurrently through several connections to the data
+ * store. The other formats, like Turtle, are imported as a single stream.
+ * The gzip compressed files are decompressed on the fly.
+ */
+public class ParallelDataLoader {
+
+    public final static int DEFAULT_CHUNK_SIZE = 16 << 20;
+    private final static int BUFFER_SIZE = 1 << 20;
+
+    protected final RDFoxServer server;
+    protected final String dataStoreName;
+    protected final int threads;
+    protected final int chunkSize;
+    // the connections importing a chunk, which are interrupted by a cancellation
+    private final Set<DataStoreConnection> chunkConnections = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    public ParallelDataLoader(RDFoxServer server, String dataStoreName, int threads) {
+        this(server, dataStoreName, threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelDataLoader(RDFoxServer server, String dataStoreName, int threads, int chunkSize) {
+        this.server = server;
+        this.dataStoreName = dataStoreName;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Import the data file into the data store of the connection
+     */
+    public void load(String inputDataFile, DataStoreConnection dsConn, Prefixes prefixes)
+            throws IOException, JRDFoxException {
+        try (InputStream dataStream = open(inputDataFile)) {
+            load(dataStream, isLineBased(inputDataFile), dsConn, prefixes);
+        }
+    }
+
+    /**
+     * Import the data stream into the data store of the connection, in parallel
+     * if the stream is line based
+     */
+    public void load(InputStream dataStream, boolean lineBased, DataStoreConnection dsConn, Prefixes prefixes)
+            throws IOException, JRDFoxException {
+        if (lineBased && threads > 1) {
+            loadChunks(dataStream);
+        } else {
+            dsConn.importData(UpdateType.ADDITION, prefixes, dataStream);
+        }
+    }
+
+    protected void loadChunks(InputStream dataStream) throws IOException, JRDFoxException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Future<Void>> pendingChunks = new ArrayDeque<>();
+
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int length = 0;
+            while (true) {
+                checkCancelled();
+                length += dataStream.readNBytes(buffer, length, buffer.length - length);
+
+                if (length < buffer.length) {
+                    // end of the stream
+                    if (length > 0) {
+                        pendingChunks.add(submitChunk(executor, buffer, length));
+                    }
+                    break;
+                }
+
+                int lastNewLine = length - 1;
+                while (lastNewLine >= 0 && buffer[lastNewLine] != '\n') {
+                    lastNewLine--;
+                }
+
+                if (lastNewLine < 0) {
+                    // a line longer than the chunk
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    continue;
+                }
+
+                pendingChunks.add(submitChunk(executor, buffer, lastNewLine + 1));
+
+                // the end of the last incomplete line starts the next chunk
+                byte[] next = new byte[chunkSize];
+                length = length - lastNewLine - 1;
+                System.arraycopy(buffer, lastNewLine + 1, next, 0, length);
+                buffer = next;
+
+                // bound the number of chunks in memory
+                while (pendingChunks.size() >= 2 * threads) {
+                    waitChunk(pendingChunks.poll());
+                }
+            }
+
+            while (!pendingChunks.isEmpty()) {
+                waitChunk(pendingChunks.poll());
+            }
+            checkCancelled();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Future<Void> submitChunk(ExecutorService executor, byte[] chunk, int length) {
+        return executor.submit(() -> {
+            checkCancelled();
+            DataStoreConnection chunkConn = server.getDataStoreConnection(dataStoreName);
+            chunkConnections.add(chunkConn);
+            try {
+                // the N-Triples chunks do not use any prefix
+                chunkConn.importData(UpdateType.ADDITION, new Prefixes(), new ByteArrayInputStream(chunk, 0, length));
+            } finally {
+                chunkConnections.remove(chunkConn);
+                server.release(dataStoreName, chunkConn);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Stop the import from another thread: the chunks being imported are
+     * interrupted and the next ones are not imported. The connection given to
+     * load has to be interrupted by the caller.
+     */
+    public void cancel() throws JRDFoxException {
+        cancelled = true;
+        for (DataStoreConnection chunkConn : chunkConnections) {
+            chunkConn.interrupt();
+        }
+    }
+
+    private void checkCancelled() throws InterruptedIOException {
+        if (cancelled) {
+            throw new InterruptedIOException("The import has been cancelled");
+        }
+    }
+
+    private static void waitChunk(Future<Void> chunk) throws IOException, JRDFoxException {
+        try {
+            chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing the data");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JRDFoxException) {
+                throw (JRDFoxException) e.getCause();
+            }
+            throw new IOException("Failed to import a chunk of the data", e.getCause());
+        }
+    }
+
+    public static InputStream open(String inputDataFile) throws IOException {
+        InputStream dataStream = new BufferedInputStream(new FileInputStream(inputDataFile), BUFFER_SIZE);
+        if (inputDataFile.endsWith(".gz")) {
+            return new GZIPInputStream(dataStream, BUFFER_SIZE);
+        }
+        return dataStream;
+    }
+
+    /**
+     * whether the file, possibly compressed, has one fact per line
+     */
+    public static boolean isLineBased(String inputDataFile) {
+        String name = inputDataFile.endsWith(".gz") ? inputDataFile.substring(0, inputDataFile.length() - 3)
+                : inputDataFile;
+        return name.endsWith(".nt");
+    }
+}
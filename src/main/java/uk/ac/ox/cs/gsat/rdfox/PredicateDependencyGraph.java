@@ -0,0 +1,131 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+
+/**
+ * The dependency graph of the predicates of a set of full TGDs: each TGD links
+ * the predicates of its body to the predicates of its head.
+ */
+public class PredicateDependencyGraph {
+
+    private final List<TGD> tgds;
+    // the TGDs having the predicate in their body
+    private final Map<Predicate, List<Integer>> bodyOccurrences = new HashMap<>();
+    // the number of distinct body predicates of each TGD
+    private final int[] bodyPredicateCounts;
+
+    public PredicateDependencyGraph(Collection<TGD> tgds) {
+        this.tgds = new ArrayList<>(tgds);
+        this.bodyPredicateCounts = new int[this.tgds.size()];
+
+        for (int i = 0; i < this.tgds.size(); i++) {
+            Set<Predicate> bodyPredicates = getPredicates(this.tgds.get(i).getBodyAtoms());
+            bodyPredicateCounts[i] = bodyPredicates.size();
+            for (Predicate predicate : bodyPredicates) {
+                bodyOccurrences.computeIfAbsent(predicate, p -> new ArrayList<>()).add(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the TGDs that can fire when the given predicates are populated,
+     * that is whose body predicates are reachable from them. Each TGD is
+     * visited once its last body predicate becomes reachable.
+     */
+    public List<TGD> getApplicableTGDs(Set<Predicate> populatedPredicates) {
+        int[] missingPredicates = bodyPredicateCounts.clone();
+        boolean[] applicable = new boolean[tgds.size()];
+        Set<Predicate> reached = new HashSet<>();
+        Deque<Predicate> toVisit = new ArrayDeque<>();
+
+        for (Predicate predicate : populatedPredicates) {
+            if (reached.add(predicate)) {
+                toVisit.add(predicate);
+            }
+        }
+        // the TGDs without body predicates are always applicable
+        for (int i = 0; i < tgds.size(); i++) {
+            if (missingPredicates[i] == 0) {
+                applicable[i] = true;
+                addHeadPredicates(tgds.get(i), reached, toVisit);
+            }
+        }
+
+        while (!toVisit.isEmpty()) {
+            Predicate predicate = toVisit.poll();
+            for (int i : bodyOccurrences.getOrDefault(predicate, Collections.emptyList())) {
+                if (--missingPredicates[i] == 0) {
+                    applicable[i] = true;
+                    addHeadPredicates(tgds.get(i), reached, toVisit);
+                }
+            }
+        }
+
+        List<TGD> result = new ArrayList<>();
+        for (int i = 0; i < tgds.size(); i++) {
+            if (applicable[i]) {
+                result.add(tgds.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the given predicates and the head predicates of the TGDs having
+     * one of them in their body, transitively, that is every predicate whose
+     * facts may change when the facts of the given ones change
+     */
+    public Set<Predicate> getDependentPredicates(Set<Predicate> changedPredicates) {
+        Set<Predicate> reached = new HashSet<>(changedPredicates);
+        Deque<Predicate> toVisit = new ArrayDeque<>(changedPredicates);
+        boolean[] visited = new boolean[tgds.size()];
+
+        while (!toVisit.isEmpty()) {
+            Predicate predicate = toVisit.poll();
+            for (int i : bodyOccurrences.getOrDefault(predicate, Collections.emptyList())) {
+                if (!visited[i]) {
+                    visited[i] = true;
+                    addHeadPredicates(tgds.get(i), reached, toVisit);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * the predicates occurring in the body of the TGDs
+     */
+    public Set<Predicate> getBodyPredicates() {
+        return Collections.unmodifiableSet(bodyOccurrences.keySet());
+    }
+
+    private static void addHeadPredicates(TGD tgd, Set<Predicate> reached, Deque<Predicate> toVisit) {
+        for (Atom headAtom : tgd.getHeadAtoms()) {
+            if (reached.add(headAtom.getPredicate())) {
+                toVisit.add(headAtom.getPredicate());
+            }
+        }
+    }
+
+    static Set<Predicate> getPredicates(Atom[] atoms) {
+        Set<Predicate> predicates = new LinkedHashSet<>();
+        for (Atom atom : atoms) {
+            predicates.add(atom.getPredicate());
+        }
+        return predicates;
+    }
+}
@@ -0,0 +1,128 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import tech.oxfordsemantic.jrdfox.client.DataStoreConnection;
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+
+/**
+ * Report at a regular interval the progress of a materialization: the elapsed
+ * time, the current phase, the number of facts of the data store, the facts
+ * derived per second since the previous sample, the memory used by the data
+ * store and the used JVM heap. The data store is read from the info of its own
+ * connection, so that the samples are taken while a long import or
+ * materialization is running on the connection of the materializer.
+ *
+ * The samples are written as CSV into the progress file, and optionally
+ * printed on the console.
+ */
+public class ProgressSampler implements AutoCloseable {
+
+    public final static long DEFAULT_INTERVAL = 10000;
+
+    private final RDFoxServer server;
+    private final String dataStoreName;
+    private final DataStoreConnection dsConn;
+    private final String name;
+    private final PrintStream out;
+    private final boolean printing;
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "progress-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long start = System.nanoTime();
+
+    private volatile String phase = "init";
+    private long lastTime = start;
+    private long lastFactCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Start sampling the data store every interval in milliseconds into the
+     * progress file, and on the console if printing, where the samples are
+     * prefixed by the name
+     */
+    public ProgressSampler(RDFoxServer server, String dataStoreName, String progressPath, long interval, String name,
+            boolean printing) throws JRDFoxException, IOException {
+        this.server = server;
+        this.dataStoreName = dataStoreName;
+        this.name = name;
+        this.printing = printing;
+        this.out = new PrintStream(new FileOutputStream(progressPath), true, "UTF-8");
+        this.out.println("elapsed_ms,phase,facts,derivation_rate,store_memory,heap_used");
+        this.dsConn = server.getDataStoreConnection(dataStoreName);
+        this.scheduler.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * the phase reported by the next samples
+     */
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    protected synchronized void sample() {
+        if (closed) {
+            return;
+        }
+        long factCount;
+        long storeMemory;
+        try {
+            factCount = RDFoxMaterializer.getStoreProperty(dsConn, RDFoxMaterializer.STORE_FACT_COUNT_PROPERTY,
+                    RDFoxMaterializer.COMPONENT_FACT_COUNT_PROPERTY);
+            storeMemory = RDFoxMaterializer.getStoreProperty(dsConn, RDFoxMaterializer.STORE_SIZE_PROPERTY,
+                    RDFoxMaterializer.COMPONENT_SIZE_PROPERTY);
+        } catch (JRDFoxException | RuntimeException e) {
+            // a sample is skipped rather than stopping the sampling
+            factCount = lastFactCount;
+            storeMemory = -1;
+        }
+        long now = System.nanoTime();
+        long heapUsed = memoryBean.getHeapMemoryUsage().getUsed();
+        long derivationRate = (now > lastTime) ? (long) ((factCount - lastFactCount) * 1e9 / (now - lastTime)) : 0;
+        long elapsed = (now - start) / 1000000;
+        String phase = this.phase;
+
+        out.println(String.format(Locale.ROOT, "%d,%s,%d,%d,%d,%d", elapsed, phase, factCount, derivationRate,
+                storeMemory, heapUsed));
+        if (printing) {
+            System.out.println(String.format(Locale.ROOT, "[%s] %.1f s %s: %d facts (%+d/s), store %d MB, heap %d MB",
+                    name, elapsed / 1e3, phase, factCount, derivationRate, storeMemory >> 20, heapUsed >> 20));
+        }
+        lastTime = now;
+        lastFactCount = factCount;
+    }
+
+    /**
+     * Take a last sample and stop the sampling
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            setPhase("done");
+            sample();
+            closed = true;
+        }
+        out.close();
+        server.release(dataStoreName, dsConn);
+    }
+}
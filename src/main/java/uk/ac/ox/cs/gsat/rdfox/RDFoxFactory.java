@@ -1,14 +1,20 @@
 package uk.ac.ox.cs.gsat.rdfox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.commons.lang3.NotImplementedException;
 
 import tech.oxfordsemantic.jrdfox.logic.Datatype;
+import tech.oxfordsemantic.jrdfox.logic.datalog.Bind;
 import tech.oxfordsemantic.jrdfox.logic.datalog.BodyFormula;
 import tech.oxfordsemantic.jrdfox.logic.datalog.Rule;
 import tech.oxfordsemantic.jrdfox.logic.datalog.TupleTableAtom;
+import tech.oxfordsemantic.jrdfox.logic.datalog.TupleTableName;
+import tech.oxfordsemantic.jrdfox.logic.expression.Expression;
+import tech.oxfordsemantic.jrdfox.logic.expression.FunctionCall;
 import tech.oxfordsemantic.jrdfox.logic.expression.IRI;
 import tech.oxfordsemantic.jrdfox.logic.expression.Literal;
 import tech.oxfordsemantic.jrdfox.logic.expression.Term;
@@ -19,6 +25,14 @@ import uk.ac.ox.cs.pdq.fol.TGD;
 
 public class RDFoxFactory {
 
+    // the arity of the tuple tables holding the atoms that are neither unary nor binary, which are named graphs
+    public final static int TUPLE_TABLE_ARITY = 3;
+    // the padding of the tuples of the predicates having less arguments than their table
+    protected final static IRI NONE = IRI.create("urn:gsat:none");
+    // the variables of the tuple ids of the reified atoms of a rule, followed by the index of their atom,
+    // an index after the body being the one of the head atom
+    protected final static String TUPLE_ID_VARIABLE = "gsat_tuple_";
+
     /**
      * translate a full TDG into a set of datalog rules:
      * one rule for each TGD head atom.
@@ -26,29 +40,46 @@ public class RDFoxFactory {
     public static List<Rule> createDatalogRule(TGD fullTgd) {
         List<Rule> result = new ArrayList<>();
 
+        // the body is shared by the rules of the head atoms
         Atom[] bodyAtoms = fullTgd.getBodyAtoms();
+        List<BodyFormula> body = new ArrayList<>();
+        for (int i = 0; i < bodyAtoms.length; i++) {
+            Predicate predicate = bodyAtoms[i].getPredicate();
+            if (isReified(predicate)) {
+                body.addAll(reifiedAtoms(predicate, Variable.create(TUPLE_ID_VARIABLE + i),
+                        pdqArgumentsAsRDFoxTerms(bodyAtoms[i])));
+            } else {
+                body.add(pdqAtomAsRDFoxAtom(bodyAtoms[i]));
+            }
+        }
         for (Atom headAtom : fullTgd.getHeadAtoms()) {
-            result.add(fullTDGAsDatalog(headAtom, bodyAtoms));
+            Predicate predicate = headAtom.getPredicate();
+            if (isReified(predicate)) {
+                Term[] arguments = pdqArgumentsAsRDFoxTerms(headAtom);
+                Variable tupleId = Variable.create(TUPLE_ID_VARIABLE + body.size());
+                List<BodyFormula> boundBody = new ArrayList<>(body);
+                boundBody.add(tupleIdBind(predicate, arguments, tupleId));
+                result.add(Rule.create(reifiedAtoms(predicate, tupleId, arguments), boundBody));
+            } else {
+                result.add(Rule.create(pdqAtomAsRDFoxAtom(headAtom), body));
+            }
         }
 
         return result;
     }
 
     /**
-     * create a datalog rule from PDQ atoms
+     * translate a set of full TGDs into datalog rules without duplicates, in
+     * parallel for the large sets
      */
-    protected static Rule fullTDGAsDatalog(Atom headAtom, Atom[] bodyAtoms) {
-        List<BodyFormula> body = new ArrayList<>();
-        for (Atom batom : bodyAtoms) {
-            body.add(pdqAtomAsRDFoxAtom(batom));
-        }
-
-        return Rule.create(pdqAtomAsRDFoxAtom(headAtom), body);
+    public static List<Rule> createDatalogRules(Collection<TGD> fullTgds) {
+        return new RDFoxTranslator().translate(fullTgds);
     }
 
-
     /**
-     * translate a binary or unary atom from PDQ as a triple in RDFox
+     * translate a binary or unary atom from PDQ as a triple in RDFox, and the
+     * nullary and ternary atoms as tuples of the table of their predicate, the
+     * reified atoms being translated by {@link #reifiedAtoms(Predicate, Term, Term[])}
      */
     protected static TupleTableAtom pdqAtomAsRDFoxAtom(Atom atom) {
 
@@ -58,9 +89,79 @@ public class RDFoxFactory {
         } else if (predicate.getArity() == 2) {
             return TupleTableAtom.rdf(pdqTermAsRDFoxTerm(atom.getTerm(0)), predicateAsIRI(predicate), pdqTermAsRDFoxTerm(atom.getTerm(1)));
         } else {
-            String message = String.format("The atom %s is neither unary nor binary", atom);
+            return tupleTableAtom(atom, pdqArgumentsAsRDFoxTerms(atom));
+        }
+    }
+
+    protected static Term[] pdqArgumentsAsRDFoxTerms(Atom atom) {
+        Term[] arguments = new Term[atom.getPredicate().getArity()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = pdqTermAsRDFoxTerm(atom.getTerm(i));
+        }
+        return arguments;
+    }
+
+    /**
+     * whether the atoms of the predicate are stored in its own tuple table,
+     * named by the predicate
+     */
+    public static boolean hasTupleTable(Predicate predicate) {
+        return predicate.getArity() == 0 || predicate.getArity() == TUPLE_TABLE_ARITY;
+    }
+
+    /**
+     * whether the atoms of the predicate have more arguments than the tuple
+     * tables, so that they are reified into a triple per argument
+     */
+    public static boolean isReified(Predicate predicate) {
+        return predicate.getArity() > TUPLE_TABLE_ARITY;
+    }
+
+    /**
+     * the property linking the id of a reified tuple of the predicate to its
+     * argument at the index, counted from 0, e.g. p#1 for the first argument
+     */
+    public static String getArgumentProperty(Predicate predicate, int index) {
+        return predicate.getName() + "#" + (index + 1);
+    }
+
+    /**
+     * create the triples of the reified tuple of the predicate, linking its id
+     * to each of its translated arguments
+     */
+    protected static List<TupleTableAtom> reifiedAtoms(Predicate predicate, Term tupleId, Term[] arguments) {
+        List<TupleTableAtom> result = new ArrayList<>(arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            result.add(TupleTableAtom.rdf(tupleId, IRI.create(getArgumentProperty(predicate, i)), arguments[i]));
+        }
+        return result;
+    }
+
+    /**
+     * bind the id of a derived reified tuple of the predicate, which is a
+     * skolem term of the predicate and the arguments, so that the same tuple
+     * always has the same id, as the one of a loaded fact
+     */
+    protected static Bind tupleIdBind(Predicate predicate, Term[] arguments, Variable tupleId) {
+        Expression[] skolemArguments = new Expression[arguments.length + 1];
+        skolemArguments[0] = Literal.create(predicate.getName(), Datatype.XSD_STRING);
+        System.arraycopy(arguments, 0, skolemArguments, 1, arguments.length);
+        return Bind.create(FunctionCall.create("SKOLEM", skolemArguments), tupleId);
+    }
+
+    /**
+     * create the atom of the tuple table of the predicate of the PDQ atom, from
+     * its translated arguments padded to the arity of the table
+     */
+    protected static TupleTableAtom tupleTableAtom(Atom atom, Term[] arguments) {
+        if (isReified(atom.getPredicate())) {
+            String message = String.format("The atom %s has more than %d arguments, so it is reified instead of a tuple",
+                    atom, TUPLE_TABLE_ARITY);
             throw new IllegalStateException(message);
         }
+        Term[] tuple = Arrays.copyOf(arguments, TUPLE_TABLE_ARITY);
+        Arrays.fill(tuple, arguments.length, TUPLE_TABLE_ARITY, NONE);
+        return TupleTableAtom.create(TupleTableName.create(atom.getPredicate().getName()), tuple);
     }
 
     protected static IRI predicateAsIRI(Predicate predicate) {
@@ -1,138 +1,817 @@
 package uk.ac.ox.cs.gsat.rdfox;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import tech.oxfordsemantic.jrdfox.Prefixes;
-import tech.oxfordsemantic.jrdfox.client.ConnectionFactory;
+import tech.oxfordsemantic.jrdfox.client.ComponentInfo;
 import tech.oxfordsemantic.jrdfox.client.Cursor;
 import tech.oxfordsemantic.jrdfox.client.DataStoreConnection;
-import tech.oxfordsemantic.jrdfox.client.ServerConnection;
 import tech.oxfordsemantic.jrdfox.client.TransactionType;
 import tech.oxfordsemantic.jrdfox.client.UpdateType;
 import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
 import tech.oxfordsemantic.jrdfox.logic.datalog.Rule;
+import tech.oxfordsemantic.jrdfox.logic.expression.Literal;
 import uk.ac.ox.cs.gsat.MaterializationStatColumns;
 import uk.ac.ox.cs.gsat.Materializer;
+import uk.ac.ox.cs.gsat.rdfox.io.ExportOptions;
+import uk.ac.ox.cs.gsat.rdfox.io.LineCountingOutputStream;
+import uk.ac.ox.cs.gsat.rdfox.io.ShardedOutputStream;
 import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
 import uk.ac.ox.cs.pdq.fol.TGD;
 
-public class RDFoxMaterializer implements Materializer {
+public class RDFoxMaterializer implements Materializer, AutoCloseable {
 
-    protected final static String SERVER_URL = "rdfox:local";
+    public final static String DEFAULT_DATA_STORE_NAME = "store";
+    // named graph keeping the facts that an incremental update may change, to compare them with the updated ones
+    protected final static String PREVIOUS_MATERIALIZATION_GRAPH = "urn:gsat:previous-materialization";
+    private final static String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    // the properties of the data store info giving the memory it uses and its number of facts
+    protected final static String STORE_SIZE_PROPERTY = "Aggregate size";
+    protected final static String COMPONENT_SIZE_PROPERTY = "Size";
+    protected final static String STORE_FACT_COUNT_PROPERTY = "Aggregate number of facts";
+    protected final static String COMPONENT_FACT_COUNT_PROPERTY = "Number of facts";
+    // the properties missing from the data store info, which are reported once
+    private final static Set<String> missingProperties = ConcurrentHashMap.newKeySet();
     protected final String exportFormat = "application/n-triples"; //"text/turtle";
-    protected final String roleName = "admin";
-    protected final String password = "admin";
-    protected final String dataStoreName = "store";
-    protected final String dirPath = "RDFox-data";
+    protected final String dataStoreName;
 
-    protected final Map<String, String> serverParameters = new HashMap<>();
-    protected final ServerConnection sConn;
+    protected final RDFoxServer server;
     protected final DataStoreConnection dsConn;
     protected final Prefixes prefixes = new Prefixes();
-    private StatisticsCollector<MaterializationStatColumns> statsCollector;
-    private String statsRowName;
+    protected ExportOptions exportOptions = new ExportOptions();
+    protected int loadThreads = 1;
+    protected boolean sharedBody = false;
+    protected boolean pruning = false;
+    // the file of the breakdown by strata, or null to import the rules at once
+    protected String strataPath = null;
+    // the file of the progress samples, or null to sample nothing
+    protected String progressPath = null;
+    protected long progressInterval = ProgressSampler.DEFAULT_INTERVAL;
+    protected boolean progressPrinting = false;
+    protected ProgressSampler progressSampler = null;
+    // the loader of the data being imported, cancelled by an interruption
+    protected volatile ParallelDataLoader dataLoader = null;
+    // the tuple tables of the predicates that are neither unary nor binary, whose facts are not triples
+    protected final Set<String> tupleTables = new LinkedHashSet<>();
+    // the TGDs whose rules are in the data store
+    protected List<TGD> loadedTGDs = new ArrayList<>();
+    // the TGDs pruned at the loading, which may become applicable after an update
+    protected Collection<TGD> prunedTGDs = new ArrayList<>();
+    protected StatisticsCollector<MaterializationStatColumns> statsCollector;
+    protected String statsRowName;
+    // the number of facts of the last loaded data
+    protected long loadedFactCount = 0;
+    // the memory used by the data store once the last data are loaded
+    protected long loadStoreMemory = 0;
 
     public RDFoxMaterializer() throws JRDFoxException {
+        this(DEFAULT_DATA_STORE_NAME);
+    }
 
-        String dataDir = new File(dirPath).getAbsolutePath();
-        serverParameters.put("persist-ds", "off");
-        serverParameters.put("persist-roles", "off");
-        serverParameters.put("server-directory", dataDir);
+    /**
+     * Create a materializer working on its own data store of the local server,
+     * so that several materializers can run concurrently
+     */
+    public RDFoxMaterializer(String dataStoreName) throws JRDFoxException {
+        this.dataStoreName = dataStoreName;
+        this.server = RDFoxServer.getInstance();
+        this.dsConn = server.getDataStoreConnection(dataStoreName);
+    }
 
-        // raise an exception if the server is already started
-        try {
-            String[] warnings = ConnectionFactory.startLocalServer(serverParameters);
-        } catch (JRDFoxException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Create a materializer working through the given connection of the
+     * server, e.g. a stub in the tests
+     */
+    protected RDFoxMaterializer(String dataStoreName, RDFoxServer server, DataStoreConnection dsConn) {
+        this.dataStoreName = dataStoreName;
+        this.server = server;
+        this.dsConn = dsConn;
+    }
 
-        if (ConnectionFactory.getNumberOfLocalServerRoles() == 0) {
-            ConnectionFactory.createFirstLocalServerRole(roleName, password);
-        }
+    @Override
+    public long materialize(String inputDataFile, Collection<TGD> fullTGDs, OutputStream outputStream)
+            throws JRDFoxException, IOException {
 
-        sConn = ConnectionFactory.newServerConnection(SERVER_URL, roleName, password);
+        load(inputDataFile, fullTGDs);
 
-        if (!sConn.containsDataStore(dataStoreName)) {
-            sConn.createDataStore(dataStoreName, new HashMap<String, String>());
-        }
+        long materializationSize = export(outputStream);
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_WRITING_TIME);
 
-        dsConn = sConn.newDataStoreConnection(dataStoreName);
+        return finish(materializationSize);
     }
 
     @Override
-    public long materialize(String inputDataFile, Collection<TGD> fullTGDs, OutputStream outputStream)
-            throws FileNotFoundException, JRDFoxException {
+    public long materialize(String inputDataFile, Collection<TGD> fullTGDs, String outputFile)
+            throws JRDFoxException, IOException {
+        if (outputFile == null) {
+            return materialize(inputDataFile, fullTGDs, (OutputStream) null);
+        }
 
         load(inputDataFile, fullTGDs);
 
-        HashMap<String, String> exportParameters = new HashMap<String, String>();
-        exportParameters.put("fact-domain", "IDB");
-        dsConn.exportData(prefixes, outputStream, exportFormat, exportParameters);
+        return finish(write(outputFile));
+    }
+
+    @Override
+    public long materialize(InputStream inputData, Collection<TGD> fullTGDs, String outputFile)
+            throws JRDFoxException, IOException {
+
+        load(inputData, true, fullTGDs);
+
+        if (outputFile == null) {
+            long materializationSize = export(null);
+            statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_WRITING_TIME);
+            return finish(materializationSize);
+        }
+
+        return finish(write(outputFile));
+    }
+
+    /**
+     * write the IDB facts into the output file as configured by the export
+     * options, the tuples of the tables into the N-Quads file next to it, and
+     * returns their number
+     */
+    protected long write(String outputFile) throws JRDFoxException, IOException {
+        // the outputs are closed before the tick, since the last compressed blocks and shards are written at the closing
+        long materializationSize;
+        OutputStream outputStream = exportOptions.openOutput(outputFile);
+        OutputStream tupleStream = null;
+        try {
+            if (hasTupleTables()) {
+                tupleStream = exportOptions.openOutput(getTupleOutputFile(outputFile));
+            }
+            materializationSize = export(outputStream, tupleStream);
+        } finally {
+            try {
+                outputStream.close();
+            } finally {
+                if (tupleStream != null) {
+                    tupleStream.close();
+                }
+            }
+        }
         statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_WRITING_TIME);
 
-        long materializationSize = getTripleCount(dsConn, "IDB");
+        if (outputStream instanceof ShardedOutputStream) {
+            String shardSizes = Arrays.stream(((ShardedOutputStream) outputStream).getShardSizes())
+                    .mapToObj(String::valueOf).collect(Collectors.joining(";"));
+            statsCollector.put(statsRowName, MaterializationStatColumns.MAT_SHARD_SIZES, shardSizes);
+        }
+
+        return materializationSize;
+    }
+
+    /**
+     * the N-Quads file of the tuples of the tables, next to the N-Triples
+     * output file
+     */
+    public static String getTupleOutputFile(String outputFile) {
+        String base = outputFile.endsWith(".nt") ? outputFile.substring(0, outputFile.length() - 3) : outputFile;
+        return base + ".nq";
+    }
+
+    /**
+     * whether the materialization has tuple tables, whose tuples are not
+     * exported as N-Triples
+     */
+    protected boolean hasTupleTables() {
+        return !tupleTables.isEmpty();
+    }
+
+    /**
+     * export the IDB triples into the output stream, if it is not null, and
+     * returns the number of IDB facts, the tuples of the tables being only
+     * counted
+     */
+    protected long export(OutputStream outputStream) throws JRDFoxException, IOException {
+        return export(outputStream, null);
+    }
+
+    /**
+     * export the IDB triples into the output stream and the tuples of the
+     * tables as N-Quads into the tuple stream, their graph being the table,
+     * the facts of a null stream being only counted, and returns the number
+     * of IDB facts
+     */
+    protected long export(OutputStream outputStream, OutputStream tupleStream) throws JRDFoxException, IOException {
+        setProgressPhase("export");
+        if (outputStream == null && tupleStream == null) {
+            return getFactCount("IDB");
+        }
+
+        long result;
+        if (outputStream != null) {
+            // the N-Triples export has one fact per line, so the facts are counted while written
+            LineCountingOutputStream countingStream = new LineCountingOutputStream(outputStream);
+            HashMap<String, String> exportParameters = new HashMap<String, String>();
+            exportParameters.put("fact-domain", "IDB");
+            dsConn.exportData(prefixes, countingStream, exportFormat, exportParameters);
+            countingStream.flush();
+            result = countingStream.getLineCount();
+        } else {
+            result = getTripleCount(dsConn, "IDB");
+        }
+        for (String tableName : tupleTables) {
+            result += writeTriples(String.format("SELECT ?s ?p ?o WHERE { GRAPH <%s> { ?s ?p ?o } }", tableName),
+                    tableName, tupleStream);
+        }
+        return result;
+    }
+
+    protected long finish(long materializationSize) throws JRDFoxException {
         statsCollector.stop(statsRowName, MaterializationStatColumns.MAT_TOTAL);
+        stopProgress();
         statsCollector.put(statsRowName, MaterializationStatColumns.MAT_SIZE, materializationSize);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_STORE_MEMORY, getStoreMemory());
+
+        // the IDB facts include the loaded ones
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_MATERIALIZATION_THROUGHPUT,
+                getThroughput(Math.max(0, materializationSize - loadedFactCount),
+                        getTime(MaterializationStatColumns.MAT_TIME)));
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_WRITING_THROUGHPUT,
+                getThroughput(materializationSize, getTime(MaterializationStatColumns.MAT_WRITING_TIME)));
 
         return materializationSize;
     }
 
+    /**
+     * the time measured for the column of the current row, in nanoseconds
+     */
+    protected long getTime(MaterializationStatColumns col) {
+        Object time = statsCollector.get(statsRowName, col);
+        return (time instanceof Number) ? ((Number) time).longValue() : 0;
+    }
+
+    /**
+     * the number of facts per second
+     */
+    protected static long getThroughput(long factCount, long nanoTime) {
+        return (nanoTime > 0) ? (long) (factCount * 1e9 / nanoTime) : 0;
+    }
+
     @Override
-    public long materialize(String inputDataFile, Collection<TGD> fullTGDs, String outputFile)
-            throws JRDFoxException, FileNotFoundException {
-        return materialize(inputDataFile, fullTGDs, new BufferedOutputStream(new FileOutputStream(outputFile)));
+    public long update(String addedDataFile, String removedDataFile, Collection<TGD> addedFullTGDs,
+            Collection<TGD> removedFullTGDs, OutputStream addedFactsStream, OutputStream removedFactsStream)
+            throws JRDFoxException, IOException {
+
+        // the pruned TGDs may fire on the updated data, so they are added back unless they are removed
+        if (!prunedTGDs.isEmpty()) {
+            Set<TGD> restoredTGDs = new LinkedHashSet<>(prunedTGDs);
+            if (removedFullTGDs != null) {
+                restoredTGDs.removeAll(removedFullTGDs);
+                Set<TGD> pruned = new HashSet<>(prunedTGDs);
+                removedFullTGDs = removedFullTGDs.stream().filter(tgd -> !pruned.contains(tgd))
+                        .collect(Collectors.toList());
+            }
+            if (addedFullTGDs != null) {
+                restoredTGDs.addAll(addedFullTGDs);
+            }
+            addedFullTGDs = restoredTGDs;
+            prunedTGDs = new ArrayList<>();
+        }
+
+        // only the facts of the predicates that the update may change are kept to be compared with the updated ones
+        Set<Predicate> changedPredicates = getChangedPredicates(addedDataFile, removedDataFile, addedFullTGDs,
+                removedFullTGDs);
+        String changedFacts = (changedPredicates != null) ? getTriplePattern(changedPredicates) : "?s ?p ?o";
+        if (changedFacts != null) {
+            dsConn.evaluateUpdate(prefixes, String.format("INSERT { GRAPH <%s> { ?s ?p ?o } } WHERE { %s }",
+                    PREVIOUS_MATERIALIZATION_GRAPH, changedFacts), new HashMap<String, String>());
+        }
+        // the tuples of the changed tables are kept in a graph of their own
+        Set<String> changedTables = getChangedTupleTables(changedPredicates, addedFullTGDs);
+        for (String tableName : changedTables) {
+            createTupleTable(getPreviousGraph(tableName));
+            if (dsConn.containsTupleTable(tableName)) {
+                dsConn.evaluateUpdate(prefixes,
+                        String.format("INSERT { GRAPH <%s> { ?s ?p ?o } } WHERE { GRAPH <%s> { ?s ?p ?o } }",
+                                getPreviousGraph(tableName), tableName),
+                        new HashMap<String, String>());
+            }
+        }
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_WRITING_TIME);
+
+        // the tables of the removed and added rules are created outside of the transaction
+        Collection<Rule> removedRules = (removedFullTGDs != null) ? getRemovedRules(removedFullTGDs) : null;
+        Collection<Rule> addedRules = (addedFullTGDs != null) ? translate(addedFullTGDs) : null;
+
+        // the incremental maintenance of the materialization is done once at the commit
+        dsConn.begin(TransactionType.READ_WRITE);
+        try {
+            if (removedDataFile != null) {
+                try (InputStream dataStream = ParallelDataLoader.open(removedDataFile)) {
+                    dsConn.importData(UpdateType.DELETION, prefixes, dataStream);
+                }
+            }
+            if (addedDataFile != null) {
+                try (InputStream dataStream = ParallelDataLoader.open(addedDataFile)) {
+                    dsConn.importData(UpdateType.ADDITION, prefixes, dataStream);
+                }
+            }
+            statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_LOAD_TIME);
+
+            if (removedRules != null && !removedRules.isEmpty()) {
+                dsConn.importData(UpdateType.DELETION, prefixes, getRulesAsStream(removedRules));
+            }
+            if (addedRules != null && !addedRules.isEmpty()) {
+                dsConn.addRules(addedRules);
+            }
+            dsConn.commitTransaction();
+        } catch (JRDFoxException | RuntimeException e) {
+            dsConn.rollbackTransaction();
+            throw e;
+        }
+        if (removedFullTGDs != null) {
+            loadedTGDs.removeAll(new HashSet<>(removedFullTGDs));
+        }
+        if (addedFullTGDs != null) {
+            loadedTGDs.addAll(addedFullTGDs);
+        }
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_TIME);
+
+        long addedSize = 0;
+        long removedSize = 0;
+        if (changedFacts != null) {
+            addedSize = writeTriples(String.format("SELECT ?s ?p ?o WHERE { %s FILTER NOT EXISTS { GRAPH <%s> { ?s ?p ?o } } }",
+                    changedFacts, PREVIOUS_MATERIALIZATION_GRAPH), addedFactsStream);
+            removedSize = writeTriples(String.format("SELECT ?s ?p ?o WHERE { GRAPH <%s> { ?s ?p ?o } FILTER NOT EXISTS { ?s ?p ?o } }",
+                    PREVIOUS_MATERIALIZATION_GRAPH), removedFactsStream);
+            dsConn.evaluateUpdate(prefixes, String.format("DROP SILENT GRAPH <%s>", PREVIOUS_MATERIALIZATION_GRAPH),
+                    new HashMap<String, String>());
+        }
+        // the tuples are written as N-Quads of their table, which exists once the update has added its rules
+        String tupleDifference = "SELECT ?s ?p ?o WHERE { GRAPH <%s> { ?s ?p ?o } FILTER NOT EXISTS { GRAPH <%s> { ?s ?p ?o } } }";
+        for (String tableName : changedTables) {
+            String previousGraph = getPreviousGraph(tableName);
+            if (dsConn.containsTupleTable(tableName)) {
+                addedSize += writeTriples(String.format(tupleDifference, tableName, previousGraph), tableName,
+                        addedFactsStream);
+                removedSize += writeTriples(String.format(tupleDifference, previousGraph, tableName), tableName,
+                        removedFactsStream);
+            }
+            dsConn.evaluateUpdate(prefixes, String.format("DROP SILENT GRAPH <%s>", previousGraph),
+                    new HashMap<String, String>());
+        }
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DELTA_WRITING_TIME);
+
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_DELTA_ADDED_SIZE, addedSize);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_DELTA_REMOVED_SIZE, removedSize);
+
+        return addedSize + removedSize;
+    }
+
+    /**
+     * Returns the predicates whose facts the update may change: the predicates
+     * of the changed data, the head predicates of the changed TGDs and the
+     * predicates depending on them through the TGDs. Returns null if the
+     * predicates of a data file are unknown, since it is not line based.
+     */
+    protected Set<Predicate> getChangedPredicates(String addedDataFile, String removedDataFile,
+            Collection<TGD> addedFullTGDs, Collection<TGD> removedFullTGDs) throws IOException {
+        Set<Predicate> changedPredicates = new HashSet<>();
+        for (String dataFile : Arrays.asList(addedDataFile, removedDataFile)) {
+            if (dataFile != null) {
+                Set<Predicate> dataPredicates = getDataPredicates(dataFile);
+                if (dataPredicates == null) {
+                    return null;
+                }
+                changedPredicates.addAll(dataPredicates);
+            }
+        }
+
+        List<TGD> tgds = new ArrayList<>(loadedTGDs);
+        for (Collection<TGD> changedTGDs : Arrays.asList(addedFullTGDs, removedFullTGDs)) {
+            if (changedTGDs != null) {
+                tgds.addAll(changedTGDs);
+                for (TGD tgd : changedTGDs) {
+                    for (Atom headAtom : tgd.getHeadAtoms()) {
+                        changedPredicates.add(headAtom.getPredicate());
+                    }
+                }
+            }
+        }
+        return new PredicateDependencyGraph(tgds).getDependentPredicates(changedPredicates);
+    }
+
+    /**
+     * Returns the tuple tables whose tuples the update may change: the ones of
+     * the changed predicates, or every table and the ones of the head
+     * predicates of the added TGDs if the changed predicates are unknown
+     */
+    protected Set<String> getChangedTupleTables(Set<Predicate> changedPredicates, Collection<TGD> addedFullTGDs) {
+        Set<String> result = new LinkedHashSet<>();
+        if (changedPredicates == null) {
+            result.addAll(tupleTables);
+            changedPredicates = new HashSet<>();
+            if (addedFullTGDs != null) {
+                for (TGD tgd : addedFullTGDs) {
+                    changedPredicates.addAll(PredicateDependencyGraph.getPredicates(tgd.getHeadAtoms()));
+                }
+            }
+        }
+        for (Predicate predicate : changedPredicates) {
+            if (RDFoxFactory.hasTupleTable(predicate)) {
+                result.add(predicate.getName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the graph keeping the tuples of the table before an update
+     */
+    protected static String getPreviousGraph(String tableName) {
+        return PREVIOUS_MATERIALIZATION_GRAPH + ":"
+                + UUID.nameUUIDFromBytes(tableName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the predicates of the facts of a N-Triples file: the classes of
+     * its rdf:type triples and the properties of the other ones, or null if
+     * the file is not line based
+     */
+    protected static Set<Predicate> getDataPredicates(String dataFile) throws IOException {
+        if (!ParallelDataLoader.isLineBased(dataFile)) {
+            return null;
+        }
+
+        Set<Predicate> predicates = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(ParallelDataLoader.open(dataFile), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                // the IRIs have no whitespace, only the literal objects are split further
+                String[] tokens = line.trim().split("\\s+", 4);
+                if (tokens.length < 3 || tokens[0].startsWith("#")) {
+                    continue;
+                }
+                if (tokens[1].equals("<" + RDF_TYPE + ">")) {
+                    predicates.add(Predicate.create(FactLoader.getSymbol(tokens[2]), 1));
+                } else {
+                    predicates.add(Predicate.create(FactLoader.getSymbol(tokens[1]), 2));
+                }
+            }
+        }
+        return predicates;
     }
 
-    protected void load(String inputDataFile, Collection<TGD> fullTGDs) throws JRDFoxException, FileNotFoundException {
+    /**
+     * Returns the graph pattern binding ?s ?p ?o to the triples of the unary
+     * and binary predicates and of the reified ones, or null if there is none
+     */
+    protected static String getTriplePattern(Collection<Predicate> predicates) {
+        String classes = predicates.stream().filter(predicate -> predicate.getArity() == 1)
+                .map(predicate -> String.format("<%s>", predicate.getName())).collect(Collectors.joining(" "));
+        List<String> propertyNames = new ArrayList<>();
+        for (Predicate predicate : predicates) {
+            if (predicate.getArity() == 2) {
+                propertyNames.add(predicate.getName());
+            } else if (RDFoxFactory.isReified(predicate)) {
+                for (int i = 0; i < predicate.getArity(); i++) {
+                    propertyNames.add(RDFoxFactory.getArgumentProperty(predicate, i));
+                }
+            }
+        }
+        String properties = propertyNames.stream().map(name -> String.format("<%s>", name))
+                .collect(Collectors.joining(" "));
+
+        List<String> patterns = new ArrayList<>();
+        if (!classes.isEmpty()) {
+            patterns.add(String.format("{ VALUES ?p { <%s> } VALUES ?o { %s } ?s ?p ?o }", RDF_TYPE, classes));
+        }
+        if (!properties.isEmpty()) {
+            patterns.add(String.format("{ VALUES ?p { %s } ?s ?p ?o }", properties));
+        }
+        return patterns.isEmpty() ? null : String.join(" UNION ", patterns);
+    }
+
+    protected void load(String inputDataFile, Collection<TGD> fullTGDs) throws JRDFoxException, IOException {
+        if (FactLoader.isFactFile(inputDataFile)) {
+            load(() -> {
+                FactLoader factLoader = new FactLoader(dsConn, prefixes);
+                try {
+                    factLoader.load(inputDataFile);
+                } finally {
+                    tupleTables.addAll(factLoader.getTupleTables());
+                }
+            }, fullTGDs);
+            return;
+        }
+
+        try (InputStream inputData = ParallelDataLoader.open(inputDataFile)) {
+            load(inputData, ParallelDataLoader.isLineBased(inputDataFile), fullTGDs);
+        }
+    }
+
+    protected void load(InputStream inputData, boolean lineBased, Collection<TGD> fullTGDs)
+            throws JRDFoxException, IOException {
+        load(() -> {
+            dataLoader = new ParallelDataLoader(server, dataStoreName, loadThreads);
+            try {
+                dataLoader.load(inputData, lineBased, dsConn, prefixes);
+            } finally {
+                dataLoader = null;
+            }
+        }, fullTGDs);
+    }
+
+    /**
+     * The import of the data into the cleared data store
+     */
+    protected interface DataImport {
+        void run() throws JRDFoxException, IOException;
+    }
+
+    protected void load(DataImport dataImport, Collection<TGD> fullTGDs) throws JRDFoxException, IOException {
         // clear every data and rule
         reset();
 
-        // import the data file
-        InputStream dataStream = new BufferedInputStream(new FileInputStream(inputDataFile));
-        dsConn.importData(UpdateType.ADDITION, prefixes, dataStream);
+        // import the data
+        startProgress("import");
+        long loadStart = System.nanoTime();
+        dataImport.run();
+        long loadTime = System.nanoTime() - loadStart;
         statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_DATA_LOAD_TIME);
-        
-        // import the rules generated from the fullTGDs
-        Collection<Rule> rules = new ArrayList<>();
-        for (TGD fullTGD : fullTGDs) {
-            for (Rule generatedRule : RDFoxFactory.createDatalogRule(fullTGD)) {
-                rules.add(generatedRule);
-            }
+
+        // counting the facts and reading the data store info are not part of the measured times
+        statsCollector.pause(statsRowName);
+        loadedFactCount = getFactCount("EDB");
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_DATA_LOAD_THROUGHPUT,
+                getThroughput(loadedFactCount, loadTime));
+        loadStoreMemory = getStoreMemory();
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_LOADED_FACTS, loadedFactCount);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_LOAD_STORE_MEMORY, loadStoreMemory);
+        statsCollector.resume(statsRowName);
+
+        if (pruning) {
+            fullTGDs = prune(fullTGDs);
+        }
+        loadedTGDs = new ArrayList<>(fullTGDs);
+
+        setProgressPhase("materialization");
+        if (strataPath != null) {
+            materializeByStrata(fullTGDs);
+            return;
         }
+
+        // import the rules generated from the fullTGDs
+        Collection<Rule> rules = translate(fullTGDs);
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_TRANSLATION_TIME);
         dsConn.addRules(rules);
         statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_TIME);
     }
 
+    /**
+     * import the rules stratum by stratum, each stratum being materialized
+     * before the next one, and write the time and the number of facts derived
+     * by each stratum into the strata file
+     */
+    protected void materializeByStrata(Collection<TGD> fullTGDs) throws JRDFoxException, IOException {
+        List<Stratification.Stratum> strata = new Stratification(fullTGDs).getStrata();
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_TRANSLATION_TIME);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_STRATUM_NB, strata.size());
+
+        try (PrintStream strataStream = new PrintStream(new FileOutputStream(strataPath), false, "UTF-8")) {
+            strataStream.println("stratum,predicates,tgds,recursive,time,derived_facts,first_predicate");
+
+            // the counting queries are not part of the measured times
+            statsCollector.pause(statsRowName);
+            long factCount = getFactCount("IDB");
+            statsCollector.resume(statsRowName);
+
+            for (int i = 0; i < strata.size(); i++) {
+                Stratification.Stratum stratum = strata.get(i);
+                Collection<Rule> rules = translate(stratum.getTGDs());
+                statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_TRANSLATION_TIME);
+                setProgressPhase("stratum " + i);
+
+                long start = System.nanoTime();
+                dsConn.addRules(rules);
+                long time = System.nanoTime() - start;
+                statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_TIME);
+
+                statsCollector.pause(statsRowName);
+                long newFactCount = getFactCount("IDB");
+                statsCollector.resume(statsRowName);
+
+                strataStream.println(String.format(Locale.ROOT, "%d,%d,%d,%b,%.3f,%d,\"%s\"", i,
+                        stratum.getPredicates().size(), stratum.getTGDs().size(), stratum.isRecursive(),
+                        time / 1e6, newFactCount - factCount,
+                        stratum.getPredicates().get(0).getName()));
+                factCount = newFactCount;
+            }
+        }
+    }
+
+    protected Collection<Rule> translate(Collection<TGD> fullTGDs) throws JRDFoxException {
+        RDFoxTranslator translator = new RDFoxTranslator();
+        translator.setSharedBody(sharedBody);
+        Collection<Rule> rules = translator.translate(fullTGDs);
+
+        // the auxiliary tables of the shared bodies and the tables of the predicates must exist before adding their rules
+        tupleTables.addAll(translator.getTupleTables());
+        for (String tableName : translator.getAuxiliaryTables()) {
+            createTupleTable(tableName);
+        }
+        for (String tableName : translator.getTupleTables()) {
+            createTupleTable(tableName);
+        }
+        if (statsCollector != null && sharedBody) {
+            statsCollector.put(statsRowName, MaterializationStatColumns.MAT_SHARED_BODY_TGDS,
+                    translator.getSharedBodyCount());
+        }
+        return rules;
+    }
+
+    protected void createTupleTable(String tableName) throws JRDFoxException {
+        if (!dsConn.containsTupleTable(tableName)) {
+            dsConn.createTupleTable(tableName, new HashMap<String, String>());
+        }
+    }
+
+    /**
+     * Returns the rules of the removed TGDs that no kept TGD produces, since
+     * the data store holds each rule once, like the shared body rules
+     */
+    protected Collection<Rule> getRemovedRules(Collection<TGD> removedFullTGDs) throws JRDFoxException {
+        Set<TGD> removed = new HashSet<>(removedFullTGDs);
+        List<TGD> keptTGDs = loadedTGDs.stream().filter(tgd -> !removed.contains(tgd)).collect(Collectors.toList());
+        Set<Rule> keptRules = new HashSet<>(translate(keptTGDs));
+        return translate(removedFullTGDs).stream().filter(rule -> !keptRules.contains(rule))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * the rules as a datalog document, to be imported or deleted from the data store
+     */
+    protected InputStream getRulesAsStream(Collection<Rule> rules) {
+        StringBuilder document = new StringBuilder();
+        for (Rule rule : rules) {
+            document.append(rule.toString(Prefixes.s_emptyPrefixes)).append('\n');
+        }
+        return new ByteArrayInputStream(document.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * write the triples answering the query as N-Triples in the output stream,
+     * if it is not null, and returns their number
+     */
+    protected long writeTriples(String query, OutputStream outputStream) throws JRDFoxException, IOException {
+        return writeTriples(query, null, outputStream);
+    }
+
+    /**
+     * write the triples answering the query as N-Quads of the graph, or as
+     * N-Triples if it is null, and returns their number
+     */
+    protected long writeTriples(String query, String graph, OutputStream outputStream)
+            throws JRDFoxException, IOException {
+        String end = (graph != null) ? String.format("<%s> .\n", graph) : ".\n";
+        Writer writer = (outputStream != null)
+                ? new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))
+                : null;
+
+        try (Cursor cursor = dsConn.createCursor(null, Prefixes.s_emptyPrefixes, query, new HashMap<String, String>())) {
+            dsConn.begin(TransactionType.READ_ONLY);
+            try {
+                long result = 0;
+                for (long multiplicity = cursor.open(); multiplicity != 0; multiplicity = cursor.advance()) {
+                    result++;
+                    if (writer != null) {
+                        for (int i = 0; i < 3; i++) {
+                            writer.write(cursor.getResource(i).toString(Prefixes.s_emptyPrefixes));
+                            writer.write(' ');
+                        }
+                        writer.write(end);
+                    }
+                }
+                return result;
+            } finally {
+                dsConn.rollbackTransaction();
+                if (writer != null) {
+                    writer.flush();
+                }
+            }
+        }
+    }
+
     protected void reset() throws JRDFoxException {
         dsConn.clear();
         prefixes.clear();
+        tupleTables.clear();
+        loadedTGDs = new ArrayList<>();
     }
 
+    /**
+     * Returns the TGDs that can fire on the loaded data, without duplicates and
+     * subsumed TGDs, and keeps the other ones
+     */
+    protected Collection<TGD> prune(Collection<TGD> fullTGDs) throws JRDFoxException {
+        PredicateDependencyGraph graph = new PredicateDependencyGraph(fullTGDs);
+        Set<Predicate> populatedPredicates = new HashSet<>();
+        for (Predicate predicate : graph.getBodyPredicates()) {
+            if (isPopulated(predicate)) {
+                populatedPredicates.add(predicate);
+            }
+        }
+
+        RulePruner pruner = new RulePruner();
+        List<TGD> keptTGDs = pruner.prune(fullTGDs, populatedPredicates);
+        Set<TGD> kept = new HashSet<>(keptTGDs);
+        prunedTGDs = fullTGDs.stream().filter(tgd -> !kept.contains(tgd)).distinct().collect(Collectors.toList());
+
+        statsCollector.tick(statsRowName, MaterializationStatColumns.MAT_PRUNING_TIME);
+        statsCollector.put(statsRowName, MaterializationStatColumns.MAT_PRUNED_RULES, pruner.getPrunedCount());
+        return keptTGDs;
+    }
+
+    /**
+     * whether the data store contains a fact of the predicate
+     */
+    protected boolean isPopulated(Predicate predicate) throws JRDFoxException {
+        String pattern;
+        if (RDFoxFactory.hasTupleTable(predicate)) {
+            if (!dsConn.containsTupleTable(predicate.getName())) {
+                return false;
+            }
+            pattern = String.format("GRAPH <%s> { ?s ?p ?o }", predicate.getName());
+        } else if (predicate.getArity() == 1) {
+            pattern = String.format("?s <%s> <%s>", RDF_TYPE, predicate.getName());
+        } else if (RDFoxFactory.isReified(predicate)) {
+            pattern = String.format("?s <%s> ?o", RDFoxFactory.getArgumentProperty(predicate, 0));
+        } else {
+            pattern = String.format("?s <%s> ?o", predicate.getName());
+        }
+
+        try (Cursor cursor = dsConn.createCursor(null, Prefixes.s_emptyPrefixes,
+                String.format("SELECT ?s WHERE { %s } LIMIT 1", pattern), new HashMap<String, String>())) {
+            dsConn.begin(TransactionType.READ_ONLY);
+            try {
+                return cursor.open() != 0;
+            } finally {
+                dsConn.rollbackTransaction();
+            }
+        }
+    }
+
+    /**
+     * count the triples of the domain with an aggregate query, so that RDFox
+     * returns a single answer instead of every triple
+     */
     protected static long getTripleCount(DataStoreConnection dsConn, String queryDomain) throws JRDFoxException {
+        return count(dsConn, queryDomain, "SELECT (COUNT(*) AS ?count) WHERE {?s ?p ?o}");
+    }
+
+    /**
+     * Returns the number of facts of the domain, in the default graph and in
+     * the tuple tables of the predicates
+     */
+    protected long getFactCount(String queryDomain) throws JRDFoxException {
+        long result = getTripleCount(dsConn, queryDomain);
+        for (String tableName : tupleTables) {
+            result += count(dsConn, queryDomain,
+                    String.format("SELECT (COUNT(*) AS ?count) WHERE { GRAPH <%s> {?s ?p ?o} }", tableName));
+        }
+        return result;
+    }
+
+    private static long count(DataStoreConnection dsConn, String queryDomain, String query) throws JRDFoxException {
         HashMap<String, String> parameters = new HashMap<>();
         parameters.put("fact-domain", queryDomain);
 
-        try (Cursor cursor = dsConn.createCursor(null, Prefixes.s_emptyPrefixes, "SELECT ?s ?p ?o WHERE {?s ?p ?o}",
-                parameters)) {
+        try (Cursor cursor = dsConn.createCursor(null, Prefixes.s_emptyPrefixes, query, parameters)) {
             dsConn.begin(TransactionType.READ_ONLY);
             try {
-                long result = 0;
-                for (long multiplicity = cursor.open(); multiplicity != 0; multiplicity = cursor.advance()) {
-                    result += multiplicity;
+                if (cursor.open() == 0) {
+                    return 0;
                 }
-
-                return result;
+                return Long.parseLong(((Literal) cursor.getResource(0)).getLexicalForm());
             } finally {
                 dsConn.rollbackTransaction();
             }
@@ -140,6 +819,166 @@ public class RDFoxMaterializer implements Materializer {
 
     }
 
+    /**
+     * Returns the memory used by the data store in bytes, as reported by its
+     * info, or 0 if it is not reported
+     */
+    protected long getStoreMemory() throws JRDFoxException {
+        return getStoreProperty(dsConn, STORE_SIZE_PROPERTY, COMPONENT_SIZE_PROPERTY);
+    }
+
+    /**
+     * Returns the aggregate property of the data store info, or otherwise the
+     * sum of the property of its components, or 0 if none reports it, which is
+     * printed the first time
+     */
+    protected static long getStoreProperty(DataStoreConnection dsConn, String aggregateProperty,
+            String componentProperty) throws JRDFoxException {
+        Long value = dsConn.getComponentInfo(false).getNumericProperties().get(aggregateProperty);
+        if (value != null) {
+            return value;
+        }
+        value = sumProperty(dsConn.getComponentInfo(true), componentProperty);
+        if (value != null) {
+            return value;
+        }
+        if (missingProperties.add(aggregateProperty)) {
+            System.out.println(String.format(
+                    "The data store info reports neither \"%s\" nor \"%s\", 0 is reported instead",
+                    aggregateProperty, componentProperty));
+        }
+        return 0;
+    }
+
+    /**
+     * the property of the component, or the sum of the property of its
+     * subcomponents, or null if none reports it
+     */
+    private static Long sumProperty(ComponentInfo componentInfo, String property) {
+        Long value = componentInfo.getNumericProperties().get(property);
+        if (value != null) {
+            return value;
+        }
+        Long result = null;
+        for (ComponentInfo subComponent : componentInfo.getSubComponents()) {
+            Long subValue = sumProperty(subComponent, property);
+            if (subValue != null) {
+                result = (result != null) ? result + subValue : subValue;
+            }
+        }
+        return result;
+    }
+
+    public void setExportOptions(ExportOptions exportOptions) {
+        this.exportOptions = exportOptions;
+    }
+
+    /**
+     * evaluate once the bodies of the TGDs having several head atoms, see
+     * RDFoxTranslator
+     */
+    public void setSharedBody(boolean sharedBody) {
+        this.sharedBody = sharedBody;
+    }
+
+    /**
+     * prune the TGDs that are useless for the loaded data, see RulePruner
+     */
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    /**
+     * import the rules stratum by stratum and write the time and the number of
+     * derived facts of each stratum into the file, see Stratification
+     */
+    public void setStrataPath(String strataPath) {
+        this.strataPath = strataPath;
+    }
+
+    /**
+     * sample the progress of the import, the materialization and the export
+     * into the file every interval in milliseconds, and print the samples on
+     * the console if printing, see ProgressSampler
+     */
+    public void setProgress(String progressPath, long progressInterval, boolean progressPrinting) {
+        this.progressPath = progressPath;
+        this.progressInterval = progressInterval;
+        this.progressPrinting = progressPrinting;
+    }
+
+    /**
+     * Set the number of connections importing the chunks of a N-Triples input concurrently
+     */
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    public String getDataStoreName() {
+        return dataStoreName;
+    }
+
+    /**
+     * the names of the data stores used by the materializer
+     */
+    public List<String> getDataStoreNames() {
+        return Collections.singletonList(dataStoreName);
+    }
+
+    /**
+     * Interrupt, from another thread, the import or the materialization
+     * running on the data store, which then fails with an exception
+     */
+    public void interrupt() throws JRDFoxException {
+        ParallelDataLoader loader = dataLoader;
+        if (loader != null) {
+            loader.cancel();
+        }
+        dsConn.interrupt();
+    }
+
+    /**
+     * Clear the data store after an interrupted run, to give back its memory
+     */
+    public void reclaim() throws JRDFoxException {
+        stopProgress();
+        reset();
+    }
+
+    /**
+     * Give back the data store connection to the server pool
+     */
+    @Override
+    public void close() {
+        stopProgress();
+        server.release(dataStoreName, dsConn);
+    }
+
+    /**
+     * start sampling the progress into the progress file, if there is one
+     */
+    protected void startProgress(String phase) throws JRDFoxException, IOException {
+        stopProgress();
+        if (progressPath != null) {
+            progressSampler = new ProgressSampler(server, dataStoreName, progressPath, progressInterval,
+                    statsRowName, progressPrinting);
+            progressSampler.setPhase(phase);
+        }
+    }
+
+    protected void setProgressPhase(String phase) {
+        if (progressSampler != null) {
+            progressSampler.setPhase(phase);
+        }
+    }
+
+    protected void stopProgress() {
+        if (progressSampler != null) {
+            progressSampler.close();
+            progressSampler = null;
+        }
+    }
+
     @Override
     public void setStatsCollector(String rowName, StatisticsCollector<MaterializationStatColumns> statsCollector) {
         this.statsCollector = statsCollector;
@@ -0,0 +1,171 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import tech.oxfordsemantic.jrdfox.client.ConnectionFactory;
+import tech.oxfordsemantic.jrdfox.client.DataStoreConnection;
+import tech.oxfordsemantic.jrdfox.client.ServerConnection;
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+
+/**
+ * The RDFox local server shared by the materializers of the JVM.
+ *
+ * The server is started once, the data store connections are kept in a pool
+ * per data store to be reused by the following runs and everything is closed
+ * when the JVM exits. The parameters of the server, like num-threads, and of
+ * the data stores, like type or init-tuple-capacity, can be configured before
+ * the server is started.
+ */
+public class RDFoxServer {
+
+    protected final static String SERVER_URL = "rdfox:local";
+    protected final static String ROLE_NAME = "admin";
+    protected final static String PASSWORD = "admin";
+    protected final static String DIR_PATH = "RDFox-data";
+
+    private static RDFoxServer instance;
+    // the parameters given by the configuration, overriding the default ones
+    private static final Map<String, String> configuredServerParameters = new HashMap<>();
+    private static final Map<String, String> dataStoreParameters = new HashMap<>();
+
+    protected final Map<String, String> serverParameters = new HashMap<>();
+    // the server connection is not thread safe, so its uses are synchronized on this
+    protected final ServerConnection sConn;
+    protected final Map<String, Queue<DataStoreConnection>> pools = new ConcurrentHashMap<>();
+    private boolean closed = false;
+
+    /**
+     * Returns the server of the JVM, starting it at the first call
+     */
+    public static synchronized RDFoxServer getInstance() throws JRDFoxException {
+        if (instance == null) {
+            instance = new RDFoxServer();
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::shutdown));
+        }
+        return instance;
+    }
+
+    /**
+     * Set the parameters of the server and of the data stores it creates, which
+     * have to be given before the server is started
+     */
+    public static synchronized void configure(Map<String, String> serverParameters,
+            Map<String, String> dataStoreParameters) {
+        if (instance != null) {
+            throw new IllegalStateException("The RDFox server is already started");
+        }
+        configuredServerParameters.putAll(serverParameters);
+        RDFoxServer.dataStoreParameters.putAll(dataStoreParameters);
+    }
+
+    private RDFoxServer() throws JRDFoxException {
+        String dataDir = new File(DIR_PATH).getAbsolutePath();
+        serverParameters.put("persist-ds", "off");
+        serverParameters.put("persist-roles", "off");
+        serverParameters.put("server-directory", dataDir);
+        serverParameters.putAll(configuredServerParameters);
+
+        // raise an exception if the server is already started by another library of the JVM
+        try {
+            ConnectionFactory.startLocalServer(serverParameters);
+        } catch (JRDFoxException e) {
+            System.out.println(String.format("The RDFox local server is already started: %s", e.getMessage()));
+        }
+
+        if (ConnectionFactory.getNumberOfLocalServerRoles() == 0) {
+            ConnectionFactory.createFirstLocalServerRole(ROLE_NAME, PASSWORD);
+        }
+
+        sConn = ConnectionFactory.newServerConnection(SERVER_URL, ROLE_NAME, PASSWORD);
+    }
+
+    /**
+     * Returns a connection to the data store, creating the data store if it does
+     * not exist. The connection should be given back with
+     * {@link #release(String, DataStoreConnection)}.
+     */
+    public DataStoreConnection getDataStoreConnection(String dataStoreName) throws JRDFoxException {
+        DataStoreConnection dsConn = getPool(dataStoreName).poll();
+        if (dsConn != null) {
+            return dsConn;
+        }
+
+        synchronized (this) {
+            checkOpen();
+            if (!sConn.containsDataStore(dataStoreName)) {
+                sConn.createDataStore(dataStoreName, new HashMap<String, String>(dataStoreParameters));
+            }
+            return sConn.newDataStoreConnection(dataStoreName);
+        }
+    }
+
+    /**
+     * Gives back a connection obtained from
+     * {@link #getDataStoreConnection(String)} to the pool of its data store
+     */
+    public void release(String dataStoreName, DataStoreConnection dsConn) {
+        // the connection is pooled under the lock, so that it is either closed here or drained by shutdown
+        synchronized (this) {
+            if (closed) {
+                dsConn.close();
+                return;
+            }
+            getPool(dataStoreName).add(dsConn);
+        }
+    }
+
+    /**
+     * the number of threads used by the server for the reasoning and the
+     * imports
+     */
+    public synchronized int getNumberOfThreads() throws JRDFoxException {
+        checkOpen();
+        return sConn.getNumberOfThreads();
+    }
+
+    /**
+     * Change the number of threads of the server, for the next operations
+     */
+    public synchronized void setNumberOfThreads(int threadCount) throws JRDFoxException {
+        checkOpen();
+        sConn.setNumberOfThreads(threadCount);
+    }
+
+    /**
+     * Close the pooled connections and the server connection, then stop the local server
+     */
+    public synchronized void shutdown() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        for (Queue<DataStoreConnection> pool : pools.values()) {
+            for (DataStoreConnection dsConn = pool.poll(); dsConn != null; dsConn = pool.poll()) {
+                dsConn.close();
+            }
+        }
+        sConn.close();
+
+        try {
+            ConnectionFactory.stopLocalServer();
+        } catch (JRDFoxException e) {
+            System.out.println(String.format("Failed to stop the RDFox local server: %s", e.getMessage()));
+        }
+    }
+
+    protected Queue<DataStoreConnection> getPool(String dataStoreName) {
+        return pools.computeIfAbsent(dataStoreName, n -> new ConcurrentLinkedQueue<>());
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The RDFox server has been shut down");
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tech.oxfordsemantic.jrdfox.logic.Datatype;
+import tech.oxfordsemantic.jrdfox.logic.datalog.BodyFormula;
+import tech.oxfordsemantic.jrdfox.logic.datalog.Rule;
+import tech.oxfordsemantic.jrdfox.logic.datalog.TupleTableAtom;
+import tech.oxfordsemantic.jrdfox.logic.datalog.TupleTableName;
+import tech.oxfordsemantic.jrdfox.logic.expression.IRI;
+import tech.oxfordsemantic.jrdfox.logic.expression.Literal;
+import tech.oxfordsemantic.jrdfox.logic.expression.Term;
+import tech.oxfordsemantic.jrdfox.logic.expression.Variable;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+
+/**
+ * Translate a set of full TGDs into datalog rules, as RDFoxFactory does for a
+ * single TGD.
+ *
+ * The IRIs, the variables, the constants and the translated atoms are
+ * interned across the whole set, the body of a TGD is translated once for all
+ * its head atoms and the duplicated rules are removed. The large sets are
+ * split into ranges translated in parallel by the common fork/join pool.
+ *
+ * In the shared body mode, the body of a TGD having several head atoms is
+ * evaluated once by a rule deriving its frontier into an auxiliary tuple table,
+ * from which each head atom is derived. The auxiliary tables are named graphs,
+ * so this is only done for the frontiers of at most three variables, and when
+ * the body joins enough atoms to be worth it.
+ *
+ * The nullary and ternary atoms are tuples of the table named by their
+ * predicate, see {@link RDFoxFactory#tupleTableAtom(Atom, Term[])}. The atoms
+ * of more arguments are reified: each of them matches a tuple id of its own in
+ * the body, and the id of a head atom is bound to a skolem term of its
+ * arguments, see {@link RDFoxFactory#reifiedAtoms(Predicate, Term, Term[])}.
+ */
+public class RDFoxTranslator {
+
+    // number of TGDs under which a range is translated sequentially
+    public final static int DEFAULT_THRESHOLD = 1024;
+    public final static String AUXILIARY_TABLE_PREFIX = "urn:gsat:body:";
+    private final static int AUXILIARY_TABLE_ARITY = RDFoxFactory.TUPLE_TABLE_ARITY;
+
+    private final ConcurrentMap<String, IRI> iris = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Term> terms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Atom, TupleTableAtom> atoms = new ConcurrentHashMap<>();
+    private final Set<String> auxiliaryTables = ConcurrentHashMap.newKeySet();
+    private final Set<String> tupleTables = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sharedBodyCount = new AtomicInteger();
+    private final int threshold;
+
+    private boolean sharedBody = false;
+    private int minSharedBodyAtoms = 2;
+    private int minSharedHeadAtoms = 2;
+
+    public RDFoxTranslator() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public RDFoxTranslator(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * translate the full TGDs into datalog rules, each rule being returned once
+     * in the order of the TGDs
+     */
+    public List<Rule> translate(Collection<TGD> fullTGDs) {
+        List<TGD> tgds = (fullTGDs instanceof List && fullTGDs instanceof RandomAccess) ? (List<TGD>) fullTGDs
+                : new ArrayList<>(fullTGDs);
+
+        List<Rule> rules;
+        if (tgds.size() <= threshold) {
+            rules = translate(tgds, 0, tgds.size());
+        } else {
+            rules = new TranslationTask(tgds, 0, tgds.size()).invoke();
+        }
+        // the duplicates are removed once the ranges are joined, so that the first occurrence is kept
+        return new ArrayList<>(new LinkedHashSet<>(rules));
+    }
+
+    /**
+     * translate sequentially the TGDs between start (inclusive) and end
+     * (exclusive), the duplicated rules being kept
+     */
+    protected List<Rule> translate(List<TGD> tgds, int start, int end) {
+        List<Rule> result = new ArrayList<>();
+        for (int i = start; i < end; i++) {
+            TGD tgd = tgds.get(i);
+            if (sharedBody && isSharedBodyWorth(tgd)) {
+                translateWithSharedBody(tgd, result);
+                continue;
+            }
+
+            List<BodyFormula> body = Collections.unmodifiableList(translateBody(tgd.getBodyAtoms()));
+            for (Atom headAtom : tgd.getHeadAtoms()) {
+                addRule(headAtom, body, result);
+            }
+        }
+        return result;
+    }
+
+    private List<BodyFormula> translateBody(Atom[] bodyAtoms) {
+        List<BodyFormula> body = new ArrayList<>(bodyAtoms.length);
+        for (int i = 0; i < bodyAtoms.length; i++) {
+            Predicate predicate = bodyAtoms[i].getPredicate();
+            if (RDFoxFactory.isReified(predicate)) {
+                body.addAll(RDFoxFactory.reifiedAtoms(predicate, getTupleId(i), translateArguments(bodyAtoms[i])));
+            } else {
+                body.add(translate(bodyAtoms[i]));
+            }
+        }
+        return body;
+    }
+
+    /**
+     * add the rule deriving the head atom from the body, the tuple id of a
+     * reified head atom being bound at the end of the body
+     */
+    private void addRule(Atom headAtom, List<BodyFormula> body, List<Rule> result) {
+        Predicate predicate = headAtom.getPredicate();
+        if (!RDFoxFactory.isReified(predicate)) {
+            result.add(Rule.create(translate(headAtom), body));
+            return;
+        }
+
+        Term[] arguments = translateArguments(headAtom);
+        Variable tupleId = getTupleId(body.size());
+        List<BodyFormula> boundBody = new ArrayList<>(body);
+        boundBody.add(RDFoxFactory.tupleIdBind(predicate, arguments, tupleId));
+        result.add(Rule.create(RDFoxFactory.reifiedAtoms(predicate, tupleId, arguments), boundBody));
+    }
+
+    /**
+     * whether the body is expensive enough to be evaluated once for all the
+     * head atoms, and whether its frontier fits in an auxiliary table
+     */
+    protected boolean isSharedBodyWorth(TGD tgd) {
+        return tgd.getHeadAtoms().length >= minSharedHeadAtoms && tgd.getBodyAtoms().length >= minSharedBodyAtoms
+                && getFrontier(tgd).size() <= AUXILIARY_TABLE_ARITY;
+    }
+
+    /**
+     * translate the TGD into a rule deriving its frontier into an auxiliary
+     * table, and one rule per head atom reading it
+     */
+    private void translateWithSharedBody(TGD tgd, List<Rule> result) {
+        List<uk.ac.ox.cs.pdq.fol.Variable> frontier = getFrontier(tgd);
+        Atom[] bodyAtoms = tgd.getBodyAtoms();
+
+        // the same body and frontier always give the same table, so that its rule is shared and can be deleted
+        String key = frontier + " :- " + Arrays.toString(bodyAtoms);
+        String tableName = AUXILIARY_TABLE_PREFIX
+                + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+        auxiliaryTables.add(tableName);
+
+        Term[] arguments = new Term[AUXILIARY_TABLE_ARITY];
+        // the frontiers of less than three variables are padded
+        Arrays.fill(arguments, RDFoxFactory.NONE);
+        for (int i = 0; i < frontier.size(); i++) {
+            arguments[i] = translate(frontier.get(i));
+        }
+        TupleTableAtom auxiliaryAtom = TupleTableAtom.create(TupleTableName.create(tableName), arguments);
+
+        result.add(Rule.create(auxiliaryAtom, translateBody(bodyAtoms)));
+        List<BodyFormula> auxiliaryBody = Collections.singletonList(auxiliaryAtom);
+        for (Atom headAtom : tgd.getHeadAtoms()) {
+            addRule(headAtom, auxiliaryBody, result);
+        }
+        sharedBodyCount.incrementAndGet();
+    }
+
+    /**
+     * the variables of the head atoms in their order of appearance in the body
+     */
+    private static List<uk.ac.ox.cs.pdq.fol.Variable> getFrontier(TGD tgd) {
+        Set<uk.ac.ox.cs.pdq.fol.Term> headTerms = new HashSet<>();
+        for (Atom headAtom : tgd.getHeadAtoms()) {
+            headTerms.addAll(Arrays.asList(headAtom.getTerms()));
+        }
+
+        Set<uk.ac.ox.cs.pdq.fol.Variable> frontier = new LinkedHashSet<>();
+        for (Atom bodyAtom : tgd.getBodyAtoms()) {
+            for (uk.ac.ox.cs.pdq.fol.Term term : bodyAtom.getTerms()) {
+                if (term.isVariable() && headTerms.contains(term)) {
+                    frontier.add((uk.ac.ox.cs.pdq.fol.Variable) term);
+                }
+            }
+        }
+        return new ArrayList<>(frontier);
+    }
+
+    /**
+     * the names of the auxiliary tables used by the translated rules
+     */
+    public Set<String> getAuxiliaryTables() {
+        return auxiliaryTables;
+    }
+
+    /**
+     * the names of the tuple tables of the predicates that are neither unary
+     * nor binary
+     */
+    public Set<String> getTupleTables() {
+        return tupleTables;
+    }
+
+    /**
+     * the number of TGDs translated with a shared body
+     */
+    public int getSharedBodyCount() {
+        return sharedBodyCount.get();
+    }
+
+    public void setSharedBody(boolean sharedBody) {
+        this.sharedBody = sharedBody;
+    }
+
+    public void setMinSharedBodyAtoms(int minSharedBodyAtoms) {
+        this.minSharedBodyAtoms = minSharedBodyAtoms;
+    }
+
+    public void setMinSharedHeadAtoms(int minSharedHeadAtoms) {
+        this.minSharedHeadAtoms = minSharedHeadAtoms;
+    }
+
+    protected TupleTableAtom translate(Atom atom) {
+        TupleTableAtom translation = atoms.get(atom);
+        if (translation == null) {
+            translation = atoms.computeIfAbsent(atom, this::createAtom);
+        }
+        return translation;
+    }
+
+    private TupleTableAtom createAtom(Atom atom) {
+        Predicate predicate = atom.getPredicate();
+        if (predicate.getArity() == 1) {
+            return TupleTableAtom.rdf(translate(atom.getTerm(0)), IRI.RDF_TYPE, getIRI(predicate));
+        } else if (predicate.getArity() == 2) {
+            return TupleTableAtom.rdf(translate(atom.getTerm(0)), getIRI(predicate), translate(atom.getTerm(1)));
+        } else {
+            TupleTableAtom result = RDFoxFactory.tupleTableAtom(atom, translateArguments(atom));
+            tupleTables.add(predicate.getName());
+            return result;
+        }
+    }
+
+    private Term[] translateArguments(Atom atom) {
+        Term[] arguments = new Term[atom.getPredicate().getArity()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = translate(atom.getTerm(i));
+        }
+        return arguments;
+    }
+
+    /**
+     * the variable of the tuple id of the reified atom at the index of the
+     * body, an index after the body being the one of the head atom
+     */
+    private Variable getTupleId(int index) {
+        String symbol = RDFoxFactory.TUPLE_ID_VARIABLE + index;
+        return (Variable) terms.computeIfAbsent("?" + symbol, k -> Variable.create(symbol));
+    }
+
+    private IRI getIRI(Predicate predicate) {
+        return iris.computeIfAbsent(predicate.getName(), IRI::create);
+    }
+
+    private Term translate(uk.ac.ox.cs.pdq.fol.Term term) {
+        if (term.isVariable()) {
+            String symbol = ((uk.ac.ox.cs.pdq.fol.Variable) term).getSymbol();
+            // the variables and the constants are told apart by a prefix of their keys
+            return terms.computeIfAbsent("?" + symbol, k -> Variable.create(symbol));
+        } else if (term.isUntypedConstant()) {
+            String symbol = term.toString();
+            return terms.computeIfAbsent("\"" + symbol, k -> Literal.create(symbol, Datatype.XSD_STRING));
+        } else {
+            String message = String.format("The term %s seems to be neither a variable nor a constant, so it can not be translated as a RDFox object", term);
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * Translate a range of TGDs by splitting it in halves until it is below the
+     * threshold, the rules of the left half coming first
+     */
+    private class TranslationTask extends RecursiveTask<List<Rule>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<TGD> tgds;
+        private final int start;
+        private final int end;
+
+        TranslationTask(List<TGD> tgds, int start, int end) {
+            this.tgds = tgds;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected List<Rule> compute() {
+            if (end - start <= threshold) {
+                return translate(tgds, start, end);
+            }
+
+            int middle = (start + end) >>> 1;
+            TranslationTask right = new TranslationTask(tgds, middle, end);
+            right.fork();
+            List<Rule> result = new TranslationTask(tgds, start, middle).compute();
+            result.addAll(right.join());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Term;
+
+/**
+ * Remove from a set of full TGDs the ones that are useless for the
+ * materialization of a given data set:
+ * - the exact duplicates,
+ * - the TGDs that can never fire, because one of their body predicates is not
+ * reachable in the predicate dependency graph from the populated predicates,
+ * - the TGDs subsumed by another one, i.e. such that a substitution maps the
+ * body of the other one into their body and its head onto their head.
+ */
+public class RulePruner {
+
+    private int duplicateCount;
+    private int unreachableCount;
+    private int subsumedCount;
+
+    /**
+     * Returns the TGDs that are kept, in their original order
+     */
+    public List<TGD> prune(Collection<TGD> fullTGDs, Set<Predicate> populatedPredicates) {
+        Set<TGD> distinctTGDs = new LinkedHashSet<>(fullTGDs);
+        duplicateCount = fullTGDs.size() - distinctTGDs.size();
+
+        List<TGD> applicableTGDs = new PredicateDependencyGraph(distinctTGDs)
+                .getApplicableTGDs(populatedPredicates);
+        unreachableCount = distinctTGDs.size() - applicableTGDs.size();
+
+        List<TGD> result = removeSubsumed(applicableTGDs);
+        subsumedCount = applicableTGDs.size() - result.size();
+        return result;
+    }
+
+    /**
+     * the total number of TGDs removed by the last pruning
+     */
+    public int getPrunedCount() {
+        return duplicateCount + unreachableCount + subsumedCount;
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    public int getUnreachableCount() {
+        return unreachableCount;
+    }
+
+    public int getSubsumedCount() {
+        return subsumedCount;
+    }
+
+    /**
+     * remove the TGDs subsumed by another one, among two equivalent TGDs the
+     * first one is kept
+     */
+    protected List<TGD> removeSubsumed(List<TGD> tgds) {
+        List<Set<Predicate>> bodyPredicates = new ArrayList<>();
+        List<Set<Predicate>> headPredicates = new ArrayList<>();
+        Map<Predicate, List<Integer>> headOccurrences = new HashMap<>();
+        for (int i = 0; i < tgds.size(); i++) {
+            bodyPredicates.add(PredicateDependencyGraph.getPredicates(tgds.get(i).getBodyAtoms()));
+            headPredicates.add(PredicateDependencyGraph.getPredicates(tgds.get(i).getHeadAtoms()));
+            for (Predicate predicate : headPredicates.get(i)) {
+                headOccurrences.computeIfAbsent(predicate, p -> new ArrayList<>()).add(i);
+            }
+        }
+
+        boolean[] removed = new boolean[tgds.size()];
+        for (int i = 0; i < tgds.size(); i++) {
+            // the candidates to subsume a TGD have each of its head predicates in their head,
+            // so only the TGDs of its least frequent head predicate are checked
+            List<Integer> candidates = null;
+            for (Predicate predicate : headPredicates.get(i)) {
+                List<Integer> occurrences = headOccurrences.get(predicate);
+                if (candidates == null || occurrences.size() < candidates.size()) {
+                    candidates = occurrences;
+                }
+            }
+            if (candidates == null) {
+                continue;
+            }
+
+            for (int j : candidates) {
+                if (j == i || removed[j] || !bodyPredicates.get(i).containsAll(bodyPredicates.get(j))
+                        || !headPredicates.get(j).containsAll(headPredicates.get(i))) {
+                    continue;
+                }
+                TGD tgd = tgds.get(i);
+                TGD other = tgds.get(j);
+                if (subsumes(other, tgd) && (j < i || !subsumes(tgd, other))) {
+                    removed[i] = true;
+                    break;
+                }
+            }
+        }
+
+        List<TGD> result = new ArrayList<>();
+        for (int i = 0; i < tgds.size(); i++) {
+            if (!removed[i]) {
+                result.add(tgds.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * whether a substitution maps the body of the first TGD into the body of
+     * the second one, and the head of the first TGD onto a superset of the head
+     * of the second one
+     */
+    protected static boolean subsumes(TGD first, TGD second) {
+        return extend(first, second, 0, new HashMap<>());
+    }
+
+    /**
+     * try to extend the substitution to the body atoms of the first TGD from
+     * the index, backtracking over the body atoms of the second TGD
+     */
+    private static boolean extend(TGD first, TGD second, int index, Map<Term, Term> substitution) {
+        Atom[] bodyAtoms = first.getBodyAtoms();
+        if (index == bodyAtoms.length) {
+            return coversHead(first, second, substitution);
+        }
+
+        Atom atom = bodyAtoms[index];
+        for (Atom target : second.getBodyAtoms()) {
+            if (!target.getPredicate().equals(atom.getPredicate())) {
+                continue;
+            }
+
+            Map<Term, Term> extended = new HashMap<>(substitution);
+            if (match(atom, target, extended) && extend(first, second, index + 1, extended)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean match(Atom atom, Atom target, Map<Term, Term> substitution) {
+        Term[] terms = atom.getTerms();
+        Term[] targetTerms = target.getTerms();
+        for (int k = 0; k < terms.length; k++) {
+            if (!terms[k].isVariable()) {
+                if (!terms[k].equals(targetTerms[k])) {
+                    return false;
+                }
+                continue;
+            }
+            Term image = substitution.putIfAbsent(terms[k], targetTerms[k]);
+            if (image != null && !image.equals(targetTerms[k])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean coversHead(TGD first, TGD second, Map<Term, Term> substitution) {
+        Set<List<Object>> images = new HashSet<>();
+        for (Atom headAtom : first.getHeadAtoms()) {
+            images.add(getKey(headAtom, substitution));
+        }
+        for (Atom headAtom : second.getHeadAtoms()) {
+            if (!images.contains(getKey(headAtom, null))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the predicate and the terms of the atom after the substitution, if any
+     */
+    private static List<Object> getKey(Atom atom, Map<Term, Term> substitution) {
+        List<Object> key = new ArrayList<>();
+        key.add(atom.getPredicate());
+        for (Term term : atom.getTerms()) {
+            key.add((substitution != null) ? substitution.getOrDefault(term, term) : term);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,223 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+import uk.ac.ox.cs.gsat.rdfox.io.ExportOptions;
+
+/**
+ * How the rule files are run: the repetitions, the inputs and outputs, the
+ * limits and the configuration of the materializers. The options are read once
+ * from the command line and given to the runs, which only read them, so that
+ * the concurrent runs share them safely.
+ */
+public class RunOptions {
+
+    private final static String DEFAULT_INPUT_CACHE_SIZE = "10240";
+
+    private int warmup = 0;
+    private int repeat = 1;
+    private int maxSweepThreadCount = 0;
+    private boolean inputKept = false;
+    private boolean outputEnabled = true;
+    private boolean tgdCacheEnabled = true;
+    // the cache of the generated data, shared by the runs, or null
+    private WatDivCache watDivCache = null;
+    // the limits of a run in milliseconds and in bytes, 0 being no limit
+    private long timeout = 0;
+    private long memoryLimit = 0;
+    private int partitionCount = 0;
+    private int loadThreads = 1;
+    private boolean sharedBody = false;
+    private boolean pruning = false;
+    // the directories of the breakdowns by strata and of the progress samples, or null
+    private String strataDirectory = null;
+    private String progressDirectory = null;
+    private long progressInterval = ProgressSampler.DEFAULT_INTERVAL;
+    private boolean progressPrinting = false;
+    private ExportOptions exportOptions = new ExportOptions();
+
+    /**
+     * Read the options of the runs given on the command line, see App
+     */
+    public static RunOptions fromProperties(Properties properties) throws IOException {
+        RunOptions options = new RunOptions();
+        options.setWarmup(Integer.parseInt(properties.getProperty(App.WARMUP_OPTION, "0")));
+        options.setRepeat(Integer.parseInt(properties.getProperty(App.REPEAT_OPTION, "1")));
+        options.setMaxSweepThreadCount(Integer.parseInt(properties.getProperty(App.SWEEP_OPTION, "0")));
+        options.setInputKept("on".equals(properties.getProperty(App.KEEP_INPUT_OPTION)));
+        options.setOutputEnabled(!"off".equals(properties.getProperty(App.OUTPUT_OPTION)));
+        options.setTGDCacheEnabled(!"off".equals(properties.getProperty(App.TGD_CACHE_OPTION)));
+        if (properties.containsKey(App.INPUT_CACHE_OPTION)) {
+            long maxSize = Long.parseLong(properties.getProperty(App.INPUT_CACHE_SIZE_OPTION, DEFAULT_INPUT_CACHE_SIZE));
+            options.setWatDivCache(new WatDivCache(
+                    Paths.get(App.getAbsolutePath(properties.getProperty(App.INPUT_CACHE_OPTION))), maxSize << 20));
+        }
+        double timeout = Double.parseDouble(properties.getProperty(App.TIMEOUT_OPTION, "0"));
+        options.setTimeout((long) (timeout * 1000));
+        options.setMemoryLimit(Long.parseLong(properties.getProperty(App.MEMORY_LIMIT_OPTION, "0")) << 20);
+        options.setPartitionCount(Integer.parseInt(properties.getProperty(App.PARTITIONS_OPTION, "0")));
+        options.setLoadThreads(Integer.parseInt(properties.getProperty(App.LOAD_THREADS_OPTION, "1")));
+        options.setSharedBody("on".equals(properties.getProperty(App.SHARED_BODY_OPTION)));
+        options.setPruning("on".equals(properties.getProperty(App.PRUNE_OPTION)));
+        if (properties.containsKey(App.STRATA_OPTION)) {
+            options.setStrataDirectory(App.getAbsolutePath(properties.getProperty(App.STRATA_OPTION)));
+        }
+        if (properties.containsKey(App.PROGRESS_OPTION)) {
+            options.setProgressDirectory(App.getAbsolutePath(properties.getProperty(App.PROGRESS_OPTION)));
+            double interval = Double.parseDouble(properties.getProperty(App.PROGRESS_INTERVAL_OPTION, "10"));
+            options.setProgressInterval((long) (interval * 1000));
+            options.setProgressPrinting("on".equals(properties.getProperty(App.PROGRESS_CONSOLE_OPTION)));
+        }
+        options.setExportOptions(ExportOptions.fromProperties(properties));
+        return options;
+    }
+
+    public int getWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(int warmup) {
+        this.warmup = warmup;
+    }
+
+    public int getRepeat() {
+        return repeat;
+    }
+
+    public void setRepeat(int repeat) {
+        this.repeat = repeat;
+    }
+
+    /**
+     * the maximal number of threads of the sweep, or 0 without sweep
+     */
+    public int getMaxSweepThreadCount() {
+        return maxSweepThreadCount;
+    }
+
+    public void setMaxSweepThreadCount(int maxSweepThreadCount) {
+        this.maxSweepThreadCount = maxSweepThreadCount;
+    }
+
+    public boolean isInputKept() {
+        return inputKept;
+    }
+
+    public void setInputKept(boolean inputKept) {
+        this.inputKept = inputKept;
+    }
+
+    public boolean isOutputEnabled() {
+        return outputEnabled;
+    }
+
+    public void setOutputEnabled(boolean outputEnabled) {
+        this.outputEnabled = outputEnabled;
+    }
+
+    public boolean isTGDCacheEnabled() {
+        return tgdCacheEnabled;
+    }
+
+    public void setTGDCacheEnabled(boolean tgdCacheEnabled) {
+        this.tgdCacheEnabled = tgdCacheEnabled;
+    }
+
+    public WatDivCache getWatDivCache() {
+        return watDivCache;
+    }
+
+    public void setWatDivCache(WatDivCache watDivCache) {
+        this.watDivCache = watDivCache;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    public boolean isSharedBody() {
+        return sharedBody;
+    }
+
+    public void setSharedBody(boolean sharedBody) {
+        this.sharedBody = sharedBody;
+    }
+
+    public boolean isPruning() {
+        return pruning;
+    }
+
+    public void setPruning(boolean pruning) {
+        this.pruning = pruning;
+    }
+
+    public String getStrataDirectory() {
+        return strataDirectory;
+    }
+
+    public void setStrataDirectory(String strataDirectory) {
+        this.strataDirectory = strataDirectory;
+    }
+
+    public String getProgressDirectory() {
+        return progressDirectory;
+    }
+
+    public void setProgressDirectory(String progressDirectory) {
+        this.progressDirectory = progressDirectory;
+    }
+
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    public boolean isProgressPrinting() {
+        return progressPrinting;
+    }
+
+    public void setProgressPrinting(boolean progressPrinting) {
+        this.progressPrinting = progressPrinting;
+    }
+
+    public ExportOptions getExportOptions() {
+        return exportOptions;
+    }
+
+    public void setExportOptions(ExportOptions exportOptions) {
+        this.exportOptions = exportOptions;
+    }
+}
@@ -0,0 +1,158 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import tech.oxfordsemantic.jrdfox.client.DataStoreConnection;
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+
+/**
+ * Enforce the limits of a run: its wall-clock time and the memory used by the
+ * data stores of its materializer. When a limit is exceeded, the import or the
+ * materialization running in RDFox is interrupted and the cancellations are
+ * run, e.g. to close the input being generated. The interruption is repeated at
+ * every check until the watchdog is closed, since an interruption only stops
+ * the operation running at that time.
+ *
+ * The memory of the JVM is not part of the limit, since it is shared by the
+ * concurrent runs.
+ */
+public class RunWatchdog implements AutoCloseable {
+
+    public final static long DEFAULT_PERIOD = 250;
+
+    /**
+     * The outcome of a run, reported in the statistics
+     */
+    public enum Status {
+        OK, TIMEOUT, OOM
+    }
+
+    private final RDFoxMaterializer materializer;
+    private final long timeout;
+    private final long memoryLimit;
+    private final List<Runnable> cancellations = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private final long start = System.nanoTime();
+    private volatile Status status = Status.OK;
+    private boolean closed = false;
+
+    /**
+     * Start watching the materializer every period in milliseconds, where the
+     * timeout is in milliseconds, the memory limit in bytes, and a limit of 0
+     * is not enforced
+     */
+    public RunWatchdog(RDFoxMaterializer materializer, long timeout, long memoryLimit, long period) {
+        this.materializer = materializer;
+        this.timeout = timeout;
+        this.memoryLimit = memoryLimit;
+        if (timeout <= 0 && memoryLimit <= 0) {
+            this.scheduler = null;
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "run-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public RunWatchdog(RDFoxMaterializer materializer, long timeout, long memoryLimit) {
+        this(materializer, timeout, memoryLimit, DEFAULT_PERIOD);
+    }
+
+    /**
+     * Add an action run when a limit is exceeded
+     */
+    public void addCancellation(Runnable cancellation) {
+        cancellations.add(cancellation);
+    }
+
+    /**
+     * the limit exceeded by the run, or OK
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    protected synchronized void check() {
+        if (closed) {
+            return;
+        }
+        if (status == Status.OK) {
+            if (timeout > 0 && System.nanoTime() - start > timeout * 1000000) {
+                stop(Status.TIMEOUT);
+            } else if (memoryLimit > 0 && getStoreMemory() > memoryLimit) {
+                stop(Status.OOM);
+            }
+            return;
+        }
+        interrupt();
+    }
+
+    private void stop(Status status) {
+        this.status = status;
+        interrupt();
+        for (Runnable cancellation : cancellations) {
+            try {
+                cancellation.run();
+            } catch (RuntimeException e) {
+                System.out.println(String.format("Failed to cancel the run: %s", e.getMessage()));
+            }
+        }
+    }
+
+    private void interrupt() {
+        try {
+            materializer.interrupt();
+        } catch (JRDFoxException e) {
+            System.out.println(String.format("Failed to interrupt the run: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * the memory used by the data stores of the materializer, read through
+     * their own connections while the materializer is running
+     */
+    protected long getStoreMemory() {
+        long result = 0;
+        try {
+            RDFoxServer server = RDFoxServer.getInstance();
+            for (String dataStoreName : materializer.getDataStoreNames()) {
+                DataStoreConnection dsConn = server.getDataStoreConnection(dataStoreName);
+                try {
+                    result += RDFoxMaterializer.getStoreProperty(dsConn, RDFoxMaterializer.STORE_SIZE_PROPERTY,
+                            RDFoxMaterializer.COMPONENT_SIZE_PROPERTY);
+                } finally {
+                    server.release(dataStoreName, dsConn);
+                }
+            }
+        } catch (JRDFoxException | RuntimeException e) {
+            // the memory is checked again at the next period
+            return 0;
+        }
+        return result;
+    }
+
+    /**
+     * Stop watching the run, the status being kept
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+
+/**
+ * The strata of a set of full TGDs: the strongly connected components of the
+ * predicate dependency graph, in a topological order, each TGD belonging to the
+ * first stratum of its head predicates. Since the body predicates of a TGD
+ * belong to the same or to previous strata, the strata can be materialized one
+ * after the other.
+ */
+public class Stratification {
+
+    private final List<Stratum> strata = new ArrayList<>();
+
+    public Stratification(Collection<TGD> fullTGDs) {
+        List<Predicate> predicates = new ArrayList<>();
+        Map<Predicate, Integer> indexes = new HashMap<>();
+        List<List<Integer>> successors = new ArrayList<>();
+
+        for (TGD tgd : fullTGDs) {
+            for (Atom atom : tgd.getAtoms()) {
+                if (!indexes.containsKey(atom.getPredicate())) {
+                    indexes.put(atom.getPredicate(), predicates.size());
+                    predicates.add(atom.getPredicate());
+                    successors.add(new ArrayList<>());
+                }
+            }
+            for (Atom bodyAtom : tgd.getBodyAtoms()) {
+                for (Atom headAtom : tgd.getHeadAtoms()) {
+                    successors.get(indexes.get(bodyAtom.getPredicate())).add(indexes.get(headAtom.getPredicate()));
+                }
+            }
+        }
+
+        int[] components = getComponents(successors);
+        int componentCount = 0;
+        for (int component : components) {
+            componentCount = Math.max(componentCount, component + 1);
+        }
+
+        // Tarjan's algorithm numbers the components in reverse topological order
+        for (int i = 0; i < componentCount; i++) {
+            strata.add(new Stratum());
+        }
+        for (int p = 0; p < predicates.size(); p++) {
+            strata.get(componentCount - 1 - components[p]).predicates.add(predicates.get(p));
+        }
+        for (int p = 0; p < predicates.size(); p++) {
+            for (int successor : successors.get(p)) {
+                if (components[p] == components[successor]) {
+                    strata.get(componentCount - 1 - components[p]).recursive = true;
+                }
+            }
+        }
+        for (TGD tgd : fullTGDs) {
+            int first = componentCount;
+            for (Atom headAtom : tgd.getHeadAtoms()) {
+                first = Math.min(first, componentCount - 1 - components[indexes.get(headAtom.getPredicate())]);
+            }
+            if (first < componentCount) {
+                strata.get(first).tgds.add(tgd);
+            }
+        }
+
+        // the strata of the EDB predicates have no TGD
+        strata.removeIf(stratum -> stratum.tgds.isEmpty());
+    }
+
+    public List<Stratum> getStrata() {
+        return Collections.unmodifiableList(strata);
+    }
+
+    /**
+     * Returns the component of each node, computed by an iterative version of
+     * Tarjan's algorithm
+     */
+    protected static int[] getComponents(List<List<Integer>> successors) {
+        int size = successors.size();
+        int[] indexes = new int[size];
+        int[] lowLinks = new int[size];
+        int[] components = new int[size];
+        int[] nextSuccessors = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(indexes, -1);
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        Deque<Integer> callStack = new ArrayDeque<>();
+        int index = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (indexes[root] >= 0) {
+                continue;
+            }
+            callStack.push(root);
+            indexes[root] = lowLinks[root] = index++;
+            stack.push(root);
+            onStack[root] = true;
+
+            while (!callStack.isEmpty()) {
+                int node = callStack.peek();
+                if (nextSuccessors[node] < successors.get(node).size()) {
+                    int successor = successors.get(node).get(nextSuccessors[node]++);
+                    if (indexes[successor] < 0) {
+                        indexes[successor] = lowLinks[successor] = index++;
+                        stack.push(successor);
+                        onStack[successor] = true;
+                        callStack.push(successor);
+                    } else if (onStack[successor]) {
+                        lowLinks[node] = Math.min(lowLinks[node], indexes[successor]);
+                    }
+                    continue;
+                }
+
+                callStack.pop();
+                if (!callStack.isEmpty()) {
+                    int parent = callStack.peek();
+                    lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+                }
+                if (lowLinks[node] == indexes[node]) {
+                    int member;
+                    do {
+                        member = stack.pop();
+                        onStack[member] = false;
+                        components[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * A stratum: the predicates of a strongly connected component and the TGDs
+     * deriving them
+     */
+    public static class Stratum {
+
+        private final List<Predicate> predicates = new ArrayList<>();
+        private final List<TGD> tgds = new ArrayList<>();
+        private boolean recursive = false;
+
+        public List<Predicate> getPredicates() {
+            return predicates;
+        }
+
+        public List<TGD> getTGDs() {
+            return tgds;
+        }
+
+        /**
+         * whether a TGD of the stratum has a body predicate of the stratum
+         */
+        public boolean isRecursive() {
+            return recursive;
+        }
+    }
+}
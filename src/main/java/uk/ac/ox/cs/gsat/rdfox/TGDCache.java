@@ -0,0 +1,387 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Term;
+import uk.ac.ox.cs.pdq.fol.UntypedConstant;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+/**
+ * Binary cache of the full TGDs parsed from a rule file, stored next to it in
+ * <name>.rul.tgds.
+ *
+ * The cache starts with the size, the modification time and the SHA-256
+ * digest of the rule file. It is followed by the table of the symbols
+ * (predicates, variables and constants) and by the TGDs, each of them encoded
+ * as integers referring to the symbols. The cache is memory mapped and a TGD
+ * is only decoded the first time it is accessed.
+ */
+public class TGDCache {
+
+    public final static String EXTENSION = ".tgds";
+    private final static int MAGIC = 0x54474443;
+    private final static int VERSION = 1;
+    private final static int DIGEST_LENGTH = 32;
+    private final static int BUFFER_SIZE = 1 << 20;
+
+    private final static byte PREDICATE = 0;
+    private final static byte VARIABLE = 1;
+    private final static byte CONSTANT = 2;
+
+    /**
+     * Returns the TGDs cached for the rule file or null if there is no cache,
+     * if the rule file has changed since the cache has been written or if the
+     * cache is corrupted
+     */
+    public static List<TGD> load(String tgdsPath) throws IOException {
+        Path cachePath = getCachePath(tgdsPath);
+        if (!Files.isRegularFile(cachePath)) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < 24 + DIGEST_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+
+        // the digest is only computed when the rule file has been touched
+        Path path = Paths.get(tgdsPath);
+        long size = buffer.getLong();
+        long lastModified = buffer.getLong();
+        byte[] digest = new byte[DIGEST_LENGTH];
+        buffer.get(digest);
+        if (size != Files.size(path) || (lastModified != Files.getLastModifiedTime(path).toMillis()
+                && !Arrays.equals(digest, getDigest(path)))) {
+            return null;
+        }
+
+        return CachedTGDs.read(buffer.slice());
+    }
+
+    /**
+     * Write the cache of the TGDs parsed from the rule file
+     */
+    public static void write(String tgdsPath, Collection<TGD> tgds) throws IOException {
+        Path path = Paths.get(tgdsPath);
+        Path cachePath = getCachePath(tgdsPath);
+        Path temporaryPath = Files.createTempFile(cachePath.toAbsolutePath().getParent(),
+                cachePath.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporaryPath), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(Files.size(path));
+                out.writeLong(Files.getLastModifiedTime(path).toMillis());
+                out.write(getDigest(path));
+
+                Encoder encoder = new Encoder(tgds);
+                encoder.writeSymbols(out);
+                encoder.writeTGDs(out);
+            }
+            Files.move(temporaryPath, cachePath, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    public static Path getCachePath(String tgdsPath) {
+        return Paths.get(tgdsPath + EXTENSION);
+    }
+
+    private static byte[] getDigest(Path path) throws IOException {
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(path),
+                MessageDigest.getInstance("SHA-256"))) {
+            // the digest is updated by the reads
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) >= 0) {
+            }
+            return in.getMessageDigest().digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Assign an integer to each symbol of the TGDs, and encode the TGDs with them
+     */
+    private static class Encoder {
+
+        private final Collection<TGD> tgds;
+        private final Map<Object, Integer> symbolIds = new HashMap<>();
+        private final List<Object> symbols = new ArrayList<>();
+
+        Encoder(Collection<TGD> tgds) {
+            this.tgds = tgds;
+            for (TGD tgd : tgds) {
+                for (Atom atom : tgd.getAtoms()) {
+                    getId(atom.getPredicate());
+                    for (Term term : atom.getTerms()) {
+                        getId(term);
+                    }
+                }
+            }
+        }
+
+        private int getId(Object symbol) {
+            Integer id = symbolIds.get(symbol);
+            if (id == null) {
+                id = symbols.size();
+                symbolIds.put(symbol, id);
+                symbols.add(symbol);
+            }
+            return id;
+        }
+
+        void writeSymbols(DataOutputStream out) throws IOException {
+            out.writeInt(symbols.size());
+            for (Object symbol : symbols) {
+                String name;
+                if (symbol instanceof Predicate) {
+                    out.writeByte(PREDICATE);
+                    out.writeInt(((Predicate) symbol).getArity());
+                    name = ((Predicate) symbol).getName();
+                } else if (symbol instanceof Variable) {
+                    out.writeByte(VARIABLE);
+                    name = ((Variable) symbol).getSymbol();
+                } else if (symbol instanceof UntypedConstant) {
+                    out.writeByte(CONSTANT);
+                    name = ((UntypedConstant) symbol).getSymbol();
+                } else {
+                    String message = String.format("The term %s can not be cached", symbol);
+                    throw new IllegalStateException(message);
+                }
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        /**
+         * the TGDs are preceded by their offsets, so that each one can be decoded
+         * independently
+         */
+        void writeTGDs(DataOutputStream out) throws IOException {
+            out.writeInt(tgds.size());
+            int offset = 0;
+            for (TGD tgd : tgds) {
+                out.writeInt(offset);
+                offset += getEncodedSize(tgd);
+            }
+            for (TGD tgd : tgds) {
+                out.writeInt(tgd.getBodyAtoms().length);
+                out.writeInt(tgd.getHeadAtoms().length);
+                for (Atom atom : tgd.getBodyAtoms()) {
+                    writeAtom(out, atom);
+                }
+                for (Atom atom : tgd.getHeadAtoms()) {
+                    writeAtom(out, atom);
+                }
+            }
+        }
+
+        private void writeAtom(DataOutputStream out, Atom atom) throws IOException {
+            out.writeInt(symbolIds.get(atom.getPredicate()));
+            for (Term term : atom.getTerms()) {
+                out.writeInt(symbolIds.get(term));
+            }
+        }
+
+        private static int getEncodedSize(TGD tgd) {
+            int size = 2 * Integer.BYTES;
+            for (Atom atom : tgd.getAtoms()) {
+                size += (1 + atom.getNumberOfTerms()) * Integer.BYTES;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * The TGDs of a mapped cache, decoded when they are first accessed
+     */
+    private static class CachedTGDs extends AbstractList<TGD> {
+
+        private final Object[] symbols;
+        private final ByteBuffer offsets;
+        private final ByteBuffer rules;
+        private final int size;
+        // the TGDs already decoded, so that the following accesses return the same instances
+        private final AtomicReferenceArray<TGD> tgds;
+
+        private CachedTGDs(Object[] symbols, ByteBuffer offsets, ByteBuffer rules, int size) {
+            this.symbols = symbols;
+            this.offsets = offsets;
+            this.rules = rules;
+            this.size = size;
+            this.tgds = new AtomicReferenceArray<>(size);
+        }
+
+        /**
+         * Read the symbols and check the encoding of the TGDs against the
+         * buffer, so that their decoding can not fail, returns null if the
+         * cache is truncated or corrupted
+         */
+        static CachedTGDs read(ByteBuffer buffer) {
+            if (buffer.remaining() < Integer.BYTES) {
+                return null;
+            }
+            int symbolCount = buffer.getInt();
+            if (symbolCount < 0 || symbolCount > buffer.remaining()) {
+                return null;
+            }
+            Object[] symbols = new Object[symbolCount];
+            // the arity of the predicates, and -1 for the terms
+            int[] arities = new int[symbolCount];
+            for (int i = 0; i < symbolCount; i++) {
+                if (buffer.remaining() < 1 + 2 * Integer.BYTES) {
+                    return null;
+                }
+                byte kind = buffer.get();
+                arities[i] = (kind == PREDICATE) ? buffer.getInt() : -1;
+                int length = buffer.getInt();
+                if ((kind == PREDICATE && arities[i] < 0) || length < 0 || length > buffer.remaining()) {
+                    return null;
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                String name = new String(bytes, StandardCharsets.UTF_8);
+
+                if (kind == PREDICATE) {
+                    symbols[i] = Predicate.create(name, arities[i]);
+                } else if (kind == VARIABLE) {
+                    symbols[i] = Variable.create(name);
+                } else if (kind == CONSTANT) {
+                    symbols[i] = UntypedConstant.create(name);
+                } else {
+                    return null;
+                }
+            }
+
+            if (buffer.remaining() < Integer.BYTES) {
+                return null;
+            }
+            int size = buffer.getInt();
+            if (size < 0 || (long) size * Integer.BYTES > buffer.remaining()) {
+                return null;
+            }
+            ByteBuffer offsets = buffer.slice();
+            buffer.position(buffer.position() + size * Integer.BYTES);
+            ByteBuffer rules = buffer.slice();
+
+            // the TGDs are stored one after the other, in the order of their offsets
+            long position = 0;
+            for (int i = 0; i < size; i++) {
+                if (offsets.getInt(i * Integer.BYTES) != position || position + 2 * Integer.BYTES > rules.limit()) {
+                    return null;
+                }
+                int bodySize = rules.getInt((int) position);
+                int headSize = rules.getInt((int) position + Integer.BYTES);
+                if (bodySize < 0 || headSize < 0) {
+                    return null;
+                }
+                position += 2 * Integer.BYTES;
+                for (long j = 0; j < (long) bodySize + headSize; j++) {
+                    if (position + Integer.BYTES > rules.limit()) {
+                        return null;
+                    }
+                    int predicate = rules.getInt((int) position);
+                    if (predicate < 0 || predicate >= symbolCount || arities[predicate] < 0
+                            || position + (1L + arities[predicate]) * Integer.BYTES > rules.limit()) {
+                        return null;
+                    }
+                    for (int k = 0; k < arities[predicate]; k++) {
+                        position += Integer.BYTES;
+                        int term = rules.getInt((int) position);
+                        if (term < 0 || term >= symbolCount || arities[term] >= 0) {
+                            return null;
+                        }
+                    }
+                    position += Integer.BYTES;
+                }
+            }
+            if (position != rules.limit()) {
+                return null;
+            }
+
+            return new CachedTGDs(symbols, offsets, rules, size);
+        }
+
+        @Override
+        public TGD get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            TGD tgd = tgds.get(index);
+            if (tgd == null) {
+                // a TGD decoded concurrently by another thread is kept
+                tgds.compareAndSet(index, null, decode(index));
+                tgd = tgds.get(index);
+            }
+            return tgd;
+        }
+
+        private TGD decode(int index) {
+            // the absolute reads allow concurrent decoding
+            int position = offsets.getInt(index * Integer.BYTES);
+            Atom[] body = new Atom[rules.getInt(position)];
+            Atom[] head = new Atom[rules.getInt(position + Integer.BYTES)];
+            position += 2 * Integer.BYTES;
+
+            for (int i = 0; i < body.length; i++) {
+                body[i] = readAtom(position);
+                position += (1 + body[i].getNumberOfTerms()) * Integer.BYTES;
+            }
+            for (int i = 0; i < head.length; i++) {
+                head[i] = readAtom(position);
+                position += (1 + head[i].getNumberOfTerms()) * Integer.BYTES;
+            }
+            return TGD.create(body, head);
+        }
+
+        private Atom readAtom(int position) {
+            Predicate predicate = (Predicate) symbols[rules.getInt(position)];
+            Term[] terms = new Term[predicate.getArity()];
+            for (int i = 0; i < terms.length; i++) {
+                position += Integer.BYTES;
+                terms[i] = (Term) symbols[rules.getInt(position)];
+            }
+            return Atom.create(predicate, terms);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
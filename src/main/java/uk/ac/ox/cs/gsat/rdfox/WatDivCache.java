@@ -0,0 +1,229 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import uk.ac.ox.cs.gsat.rdfox.io.ParallelGZIPOutputStream;
+
+/**
+ * Cache of the data generated by watdiv, whose entries are addressed by the
+ * digest of the watdiv schema, of the scale factor and of the generator version.
+ *
+ * The entries are stored compressed with gzip. When the cache exceeds its size
+ * limit, the least recently used entries are evicted, except the ones being
+ * read by a run.
+ */
+public class WatDivCache {
+
+    private final static String DATA_EXTENSION = ".nt.gz";
+    private final static String SIZE_EXTENSION = ".size";
+
+    private final Path directory;
+    private final long maxSize;
+    // the number of runs reading each entry, which is not evicted meanwhile
+    private final Map<String, Integer> pins = new HashMap<>();
+
+    /**
+     * @param maxSize the size limit of the cache in bytes
+     */
+    public WatDivCache(Path directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Returns the key of the data generated from the schema written by the generator
+     */
+    public String getKey(WatDivGenerator generator) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Files.readAllBytes(Path.of(generator.getWatdivPath())));
+            digest.update(String.format("\nscale=%d\nversion=%s", generator.getScaleFactor(),
+                    WatDivGenerator.GENERATOR_VERSION).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the entry of the key or null if the key is not cached. The entry
+     * is marked as the most recently used and is not evicted until closed.
+     */
+    public synchronized CachedInput lookup(String key) throws IOException {
+        Path dataPath = getDataPath(key);
+        Path sizePath = getSizePath(key);
+        try {
+            long size = Long.parseLong(new String(Files.readAllBytes(sizePath), StandardCharsets.UTF_8).trim());
+            Files.setLastModifiedTime(dataPath, FileTime.fromMillis(System.currentTimeMillis()));
+            pins.merge(key, 1, Integer::sum);
+            return new CachedInput(key, dataPath.toString(), size);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Open a new entry for the key, which is visible to the lookups only once
+     * committed
+     */
+    public Entry create(String key) throws IOException {
+        Path temporaryPath = Files.createTempFile(directory, key, ".tmp");
+        return new Entry(key, temporaryPath);
+    }
+
+    /**
+     * Delete the least recently used entries which are not being read, until
+     * the cache fits in its size limit
+     */
+    public synchronized void evict() throws IOException {
+        List<Path> entries;
+        try (Stream<Path> files = Files.list(directory)) {
+            entries = files.filter(p -> p.getFileName().toString().endsWith(DATA_EXTENSION))
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        long totalSize = 0;
+        for (Path entry : entries) {
+            totalSize += Files.size(entry);
+        }
+
+        entries.sort(Comparator.comparing(WatDivCache::getLastModifiedTime));
+        for (Path entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            String name = entry.getFileName().toString();
+            String key = name.substring(0, name.length() - DATA_EXTENSION.length());
+            if (pins.containsKey(key)) {
+                continue;
+            }
+            totalSize -= Files.size(entry);
+            Files.deleteIfExists(getSizePath(key));
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    private synchronized void unpin(String key) {
+        pins.computeIfPresent(key, (k, count) -> (count > 1) ? count - 1 : null);
+    }
+
+    private Path getDataPath(String key) {
+        return directory.resolve(key + DATA_EXTENSION);
+    }
+
+    private Path getSizePath(String key) {
+        return directory.resolve(key + SIZE_EXTENSION);
+    }
+
+    private static FileTime getLastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * A cached input: the path of its data and its number of triples. The
+     * input is kept in the cache until it is closed.
+     */
+    public class CachedInput implements Closeable {
+
+        private final String key;
+        private final String path;
+        private final long size;
+        private boolean closed = false;
+
+        private CachedInput(String key, String path, long size) {
+            this.key = key;
+            this.path = path;
+            this.size = size;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Release the input, which may then be evicted
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            unpin(key);
+            evict();
+        }
+    }
+
+    /**
+     * An entry being written
+     */
+    public class Entry extends FilterOutputStream {
+
+        private final String key;
+        private final Path temporaryPath;
+
+        private Entry(String key, Path temporaryPath) throws IOException {
+            super(new ParallelGZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath), 1 << 20),
+                    Runtime.getRuntime().availableProcessors()));
+            this.key = key;
+            this.temporaryPath = temporaryPath;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /**
+         * Make the written data the entry of the key, then evict the old entries
+         */
+        public void commit(long size) throws IOException {
+            close();
+            Files.write(getSizePath(key), String.valueOf(size).getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryPath, getDataPath(key), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            evict();
+        }
+
+        /**
+         * Drop the written data
+         */
+        public void abort() throws IOException {
+            close();
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package uk.ac.ox.cs.gsat.rdfox;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FilenameUtils;
 
@@ -27,6 +33,8 @@ import uk.ac.ox.cs.pdq.fol.Variable;
 
 public class WatDivGenerator {
 
+    // to be changed when the generated data change, since it is part of the cache keys
+    public final static String GENERATOR_VERSION = "2";
     private final static int CONCEPT_FACTOR = 250;
     private final static int ROLE_FACTOR = 10;
     // private final static int SCALE_FACTOR = 10;
@@ -54,6 +62,7 @@ public class WatDivGenerator {
     private final String dataPath;
     private final String watdivPath;
     private final int scaleFactor;
+    private boolean schemaWritten = false;
 
     public WatDivGenerator(Collection<TGD> tgds, String dataPath, int scaleFactor) {
         this.tgds = tgds;
@@ -62,7 +71,36 @@ public class WatDivGenerator {
         this.scaleFactor = scaleFactor;
     }
 
+    /**
+     * Generate the data into the data file and returns the number of triples
+     */
     public int generate() throws IOException {
+        File file = new File(dataPath);
+        file.delete();
+        file.createNewFile();
+
+        try (OutputStream out = new FileOutputStream(dataPath)) {
+            return generate(out);
+        }
+    }
+
+    /**
+     * Generate the data as N-Triples into the stream, while watdiv is running, and
+     * returns the number of triples
+     */
+    public int generate(OutputStream out) throws IOException {
+        writeSchema();
+        return runWatDiv(out);
+    }
+
+    /**
+     * Write the watdiv schema induced by the TGDs. The schema is the same for the
+     * same TGDs, so that it can be used as a cache key.
+     */
+    public void writeSchema() throws IOException {
+        if (schemaWritten) {
+            return;
+        }
 
         for (TGD tgd : tgds) {
 
@@ -114,12 +152,12 @@ public class WatDivGenerator {
 
         }
 
-        for (Predicate p : concepts) {
+        for (Predicate p : sorted(concepts)) {
             namespacedConcept.put(p, getNamespaced(p));
             // System.out.println(p);
         }
 
-        for (Predicate p : roles) {
+        for (Predicate p : sorted(roles)) {
             namespacedConcept.put(p, getNamespaced(p));
             // System.out.println(p);
         }
@@ -144,62 +182,54 @@ public class WatDivGenerator {
         writeRoles(writer);
 
         writer.close();
-
-        return runWatDiv();
+        schemaWritten = true;
     }
 
-    private int runWatDiv() throws IOException {
+    private int runWatDiv(OutputStream dataStream) throws IOException {
 
         ProcessBuilder pb = new ProcessBuilder("./watdiv","-d", watdivPath, ((Integer) scaleFactor).toString());
         Process process = pb.start();
 
-        BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String line;
-
-        File file = new File(dataPath);
-        file.delete();
-        file.createNewFile();
-
-        BufferedWriter writer = new BufferedWriter(new FileWriter(this.dataPath));
-
-        // compile the concept name replacement map
-        int subKeyLength = 5;
-        Map<String, String> conceptReplacement = new HashMap<>();
-        for (Predicate concept : concepts) {
-            String conceptName = concept.toString();
-            conceptReplacement.put("<" + conceptName + "0>", "<" + conceptName + ">");
-        }
-
-        int count = 0;
-        while((line = out.readLine()) != null) {
-            count++;
-            line = line.trim();
-            String[] iris = line.split("\\s+");
-            // remove the suffix "0" from the concept name
-            if (iris[1].equals("<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>")) {
-                iris[2] = conceptReplacement.getOrDefault(iris[2], iris[2]);
+        // drain the error output, so that watdiv never blocks on it
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Thread errorDrainer = new Thread(() -> {
+            try (InputStream err = process.getErrorStream()) {
+                err.transferTo(errors);
+            } catch (IOException e) {
+                // the process has been destroyed
             }
+        }, "watdiv-stderr");
+        errorDrainer.setDaemon(true);
+        errorDrainer.start();
 
-            writer.write(String.join(" ", iris));
-            writer.write("\n");
-        }
+        try {
+            // remove the suffix "0" from the concept names
+            Collection<String> conceptNames = new ArrayList<>();
+            for (Predicate concept : concepts) {
+                conceptNames.add(concept.toString());
+            }
+            WatDivRewriter rewriter = new WatDivRewriter(conceptNames);
+            long count = rewriter.rewrite(process.getInputStream(), dataStream);
+            dataStream.flush();
+
+            try {
+                process.waitFor();
+                errorDrainer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for watdiv");
+            }
 
-        writer.close();
+            if (process.exitValue() != 0 || errors.size() != 0) {
+                System.out.println("Watdiv returns an error !!");
+                System.out.println(errors.toString());
+            }
 
-        try {
-            process.waitFor();
-        } catch (InterruptedException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            return (int) count;
+        } finally {
+            // when the data stream is closed by its reader, watdiv is not waited for
+            process.destroy();
         }
-        
-        if (process.exitValue() != 0 || process.getErrorStream().available() != 0) {
-            System.out.println("Watdiv returns an error !!");
-            process.getErrorStream().transferTo(System.out);
-            System.out.println();
-        }
-        
-        return count;
     }
 
     private String getNamespaced(Predicate predicate) {
@@ -230,9 +260,9 @@ public class WatDivGenerator {
 
     public void writeRoles(BufferedWriter writer) throws IOException {
 
-        for (Predicate role : roles) {
-            Collection<Predicate> domains = getRoleDomain(role);
-            Collection<Predicate> ranges = getRoleRange(role);
+        for (Predicate role : sorted(roles)) {
+            Collection<Predicate> domains = sorted(getRoleDomain(role));
+            Collection<Predicate> ranges = sorted(getRoleRange(role));
             double prob = ROLE_FACTOR / (double) ((domains.size() + ranges.size()));
             for (Predicate domain : domains) {
                 for (Predicate range : ranges) {
@@ -251,8 +281,8 @@ public class WatDivGenerator {
         if (roleDomainConcepts.containsKey(role))
             return roleDomainConcepts.get(role);
         else {
-            List<Predicate> d = new ArrayList<>(concepts);
-            Collections.shuffle(d);
+            List<Predicate> d = sorted(concepts);
+            Collections.shuffle(d, new Random(role.toString().hashCode()));
             return d.subList(0, DOMAIN_RANGE_LIMIT);
         }
     }
@@ -261,8 +291,8 @@ public class WatDivGenerator {
         if (roleRangeConcepts.containsKey(role))
             return roleRangeConcepts.get(role);
         else {
-            List<Predicate> d = new ArrayList<>(concepts);
-            Collections.shuffle(d);
+            List<Predicate> d = sorted(concepts);
+            Collections.shuffle(d, new Random(~role.toString().hashCode()));
             return d.subList(0, DOMAIN_RANGE_LIMIT);
         }
     }
@@ -271,7 +301,7 @@ public class WatDivGenerator {
 
         int normalizedConceptFactor = Math.max(1, (CONCEPT_FACTOR / concepts.size()));
         
-        for (Predicate concept : concepts) {
+        for (Predicate concept : sorted(concepts)) {
             String conceptName = getNamespaced(concept);
             writer.write("// Meta concept \n");
             writer.write("<type*> ");
@@ -290,7 +320,7 @@ public class WatDivGenerator {
 
             Set<Predicate> inter = conceptIntersections.getOrDefault(concept, Set.of());
             double prob = 1.0 / inter.size();
-            for (Predicate other : inter) {
+            for (Predicate other : sorted(inter)) {
                 String otherName = getNamespaced(other);
                 writer.write(
                         "#association	" + conceptName + "Entity 	rdf:type 		" + otherName +"	2 1		"+ prob +"	UNIFORM\n\n");
@@ -301,7 +331,7 @@ public class WatDivGenerator {
     public void writeNamespaces(BufferedWriter writer) throws IOException {
         writer.write("#namespace	rdf=http://www.w3.org/1999/02/22-rdf-syntax-ns#\n");
 
-        for (Entry<String, String> entry : prefixes.entrySet()) {
+        for (Entry<String, String> entry : new TreeMap<>(prefixes).entrySet()) {
             writer.write("#namespace "+ entry.getKey()+"="+entry.getValue()+ "\n");
         }
 
@@ -318,6 +348,23 @@ public class WatDivGenerator {
         }
     }
 
+    /**
+     * the predicates sorted by name, to write the schema in the same order at each run
+     */
+    private static List<Predicate> sorted(Collection<Predicate> predicates) {
+        List<Predicate> result = new ArrayList<>(predicates);
+        result.sort(Comparator.comparing(Predicate::toString));
+        return result;
+    }
+
+    public String getWatdivPath() {
+        return watdivPath;
+    }
+
+    public int getScaleFactor() {
+        return scaleFactor;
+    }
+
     public static String getWatdivPath(String dataPath) {
         return Paths.get(dataPath).getParent().resolve(FilenameUtils.getBaseName(dataPath) + "-watdiv.txt").toString();
     }
@@ -0,0 +1,251 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Rewrite the N-Triples lines produced by watdiv: the tokens of each line are
+ * separated by a single space and the suffix "0" that watdiv adds to the
+ * concepts is removed from the objects of the rdf:type triples.
+ *
+ * The rewriting works on the bytes of the lines, without creating strings,
+ * and the concept names are looked up in a byte trie. A rewriter is used by
+ * one thread at a time.
+ */
+public class WatDivRewriter {
+
+    public final static int DEFAULT_BUFFER_SIZE = 1 << 20;
+    private final static byte[] RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteTrie concepts = new ByteTrie();
+    private final int bufferSize;
+
+    // the bounds of the tokens of the current line
+    private final int[] tokenStarts = new int[3];
+    private final int[] tokenEnds = new int[3];
+
+    // the rewritten lines are gathered in an array, which is written at once into the output
+    private byte[] staging;
+    private int stagingLength;
+    private OutputStream out;
+
+    public WatDivRewriter(Collection<String> conceptNames) {
+        this(conceptNames, DEFAULT_BUFFER_SIZE);
+    }
+
+    public WatDivRewriter(Collection<String> conceptNames, int bufferSize) {
+        this.bufferSize = bufferSize;
+        for (String conceptName : conceptNames) {
+            concepts.add(conceptName.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Rewrite the lines of the input into the output and returns the number of
+     * non empty lines
+     */
+    public long rewrite(InputStream in, OutputStream out) throws IOException {
+        byte[] input = new byte[bufferSize];
+        this.staging = new byte[bufferSize];
+        this.stagingLength = 0;
+        this.out = out;
+        int length = 0;
+        long count = 0;
+
+        while (true) {
+            int read = in.read(input, length, input.length - length);
+            boolean endOfInput = read < 0;
+            if (!endOfInput) {
+                length += read;
+            }
+
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (input[i] == '\n') {
+                    if (rewriteLine(input, lineStart, i)) {
+                        count++;
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            if (endOfInput) {
+                if (lineStart < length && rewriteLine(input, lineStart, length)) {
+                    count++;
+                }
+                break;
+            }
+
+            // keep the incomplete last line at the beginning of the buffer
+            length -= lineStart;
+            System.arraycopy(input, lineStart, input, 0, length);
+            if (length == input.length) {
+                input = Arrays.copyOf(input, 2 * input.length);
+            }
+        }
+
+        flush();
+        return count;
+    }
+
+    /**
+     * write the rewriting of the line between start (inclusive) and end
+     * (exclusive), returns false if the line is empty
+     */
+    private boolean rewriteLine(byte[] line, int start, int end) throws IOException {
+        int tokenCount = 0;
+        int position = skipWhitespaces(line, start, end);
+        if (position == end) {
+            return false;
+        }
+
+        // the first three tokens are kept to check the rdf:type triples
+        int firstTokensEnd = position;
+        while (position < end && tokenCount < 3) {
+            tokenStarts[tokenCount] = position;
+            position = skipToken(line, position, end);
+            tokenEnds[tokenCount] = position;
+            tokenCount++;
+            firstTokensEnd = position;
+            position = skipWhitespaces(line, position, end);
+        }
+
+        for (int t = 0; t < tokenCount; t++) {
+            if (t > 0) {
+                put((byte) ' ');
+            }
+
+            int tokenStart = tokenStarts[t];
+            int tokenEnd = tokenEnds[t];
+            if (t == 2 && isConceptWithSuffix(line, tokenStart, tokenEnd)
+                    && equals(line, tokenStarts[1], tokenEnds[1], RDF_TYPE)) {
+                // <concept0> is written as <concept>
+                put(line, tokenStart, tokenEnd - tokenStart - 2);
+                put((byte) '>');
+            } else {
+                put(line, tokenStart, tokenEnd - tokenStart);
+            }
+        }
+
+        // the other tokens are copied separated by a single space
+        position = firstTokensEnd;
+        while ((position = skipWhitespaces(line, position, end)) < end) {
+            int tokenStart = position;
+            position = skipToken(line, position, end);
+            put((byte) ' ');
+            put(line, tokenStart, position - tokenStart);
+        }
+
+        put((byte) '\n');
+        return true;
+    }
+
+    private boolean isConceptWithSuffix(byte[] line, int tokenStart, int tokenEnd) {
+        return tokenEnd - tokenStart >= 3 && line[tokenStart] == '<' && line[tokenEnd - 1] == '>'
+                && line[tokenEnd - 2] == '0' && concepts.contains(line, tokenStart + 1, tokenEnd - 2);
+    }
+
+    private static boolean equals(byte[] line, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (line[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    private static int skipWhitespaces(byte[] line, int position, int end) {
+        while (position < end && isWhitespace(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipToken(byte[] line, int position, int end) {
+        while (position < end && !isWhitespace(line[position])) {
+            position++;
+        }
+        return position;
+    }
+
+    private void put(byte b) throws IOException {
+        if (stagingLength == staging.length) {
+            flush();
+        }
+        staging[stagingLength++] = b;
+    }
+
+    private void put(byte[] b, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (stagingLength == staging.length) {
+                flush();
+            }
+            int written = Math.min(length, staging.length - stagingLength);
+            System.arraycopy(b, offset, staging, stagingLength, written);
+            stagingLength += written;
+            offset += written;
+            length -= written;
+        }
+    }
+
+    private void flush() throws IOException {
+        out.write(staging, 0, stagingLength);
+        stagingLength = 0;
+    }
+
+    /**
+     * Set of byte strings allowing to look up a slice of an array
+     */
+    protected static class ByteTrie {
+
+        private byte[] labels = new byte[0];
+        private ByteTrie[] children = new ByteTrie[0];
+        private boolean terminal = false;
+
+        public void add(byte[] word) {
+            ByteTrie node = this;
+            for (byte b : word) {
+                ByteTrie child = node.getChild(b);
+                if (child == null) {
+                    child = new ByteTrie();
+                    int size = node.labels.length;
+                    node.labels = Arrays.copyOf(node.labels, size + 1);
+                    node.children = Arrays.copyOf(node.children, size + 1);
+                    node.labels[size] = b;
+                    node.children[size] = child;
+                }
+                node = child;
+            }
+            node.terminal = true;
+        }
+
+        public boolean contains(byte[] b, int start, int end) {
+            ByteTrie node = this;
+            for (int i = start; i < end && node != null; i++) {
+                node = node.getChild(b[i]);
+            }
+            return node != null && node.terminal;
+        }
+
+        private ByteTrie getChild(byte label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+}
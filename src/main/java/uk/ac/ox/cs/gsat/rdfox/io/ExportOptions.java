@@ -0,0 +1,150 @@
+package uk.ac.ox.cs.gsat.rdfox.io;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import uk.ac.ox.cs.gsat.rdfox.io.ShardedOutputStream.ShardKey;
+
+/**
+ * How the materialization is written: its compression and its sharding
+ */
+public class ExportOptions {
+
+    public enum Compression {
+        NONE(""), GZIP(".gz"), ZSTD(".zst");
+
+        private final String extension;
+
+        private Compression(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public final static String COMPRESSION_OPTION = "compression";
+    public final static String COMPRESSION_THREADS_OPTION = "compression-threads";
+    public final static String SHARDS_OPTION = "shards";
+    public final static String SHARD_BY_OPTION = "shard-by";
+
+    private final static int BUFFER_SIZE = 1 << 20;
+    private final static int ZSTD_LEVEL = 3;
+
+    private Compression compression = Compression.NONE;
+    private int compressionThreads = Runtime.getRuntime().availableProcessors();
+    private int shardCount = 1;
+    private ShardKey shardKey = ShardKey.SUBJECT;
+
+    /**
+     * Read the options --compression none|gzip|zstd, --compression-threads n,
+     * --shards n and --shard-by subject|predicate
+     */
+    public static ExportOptions fromProperties(Properties properties) {
+        ExportOptions options = new ExportOptions();
+        if (properties.containsKey(COMPRESSION_OPTION)) {
+            options.setCompression(Compression.valueOf(properties.getProperty(COMPRESSION_OPTION).toUpperCase()));
+        }
+        if (properties.containsKey(COMPRESSION_THREADS_OPTION)) {
+            options.setCompressionThreads(Integer.parseInt(properties.getProperty(COMPRESSION_THREADS_OPTION)));
+        }
+        if (properties.containsKey(SHARDS_OPTION)) {
+            options.setShardCount(Integer.parseInt(properties.getProperty(SHARDS_OPTION)));
+        }
+        if (properties.containsKey(SHARD_BY_OPTION)) {
+            options.setShardKey(ShardKey.valueOf(properties.getProperty(SHARD_BY_OPTION).toUpperCase()));
+        }
+        return options;
+    }
+
+    /**
+     * Open the stream writing into the output file or into its shards
+     */
+    public OutputStream openOutput(String outputFile) throws IOException {
+        if (shardCount <= 1) {
+            return openFile(outputFile + compression.getExtension());
+        }
+
+        OutputStream[] shards = new OutputStream[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = openFile(getShardPath(outputFile, i));
+            }
+        } catch (IOException e) {
+            for (OutputStream shard : shards) {
+                if (shard != null) {
+                    shard.close();
+                }
+            }
+            throw e;
+        }
+        return new ShardedOutputStream(shards, shardKey);
+    }
+
+    /**
+     * the path of a shard is the one of the output file with the shard number
+     * before its extension
+     */
+    public String getShardPath(String outputFile, int shard) {
+        int extensionIndex = outputFile.lastIndexOf('.');
+        if (extensionIndex <= outputFile.lastIndexOf('/')) {
+            extensionIndex = outputFile.length();
+        }
+        return outputFile.substring(0, extensionIndex) + "-" + shard + outputFile.substring(extensionIndex)
+                + compression.getExtension();
+    }
+
+    protected OutputStream openFile(String path) throws IOException {
+        OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(path), BUFFER_SIZE);
+        // with several shards, the compression threads are split between them
+        int threads = Math.max(1, compressionThreads / shardCount);
+
+        switch (compression) {
+        case GZIP:
+            return new ParallelGZIPOutputStream(fileStream, threads);
+        case ZSTD:
+            return new BufferedOutputStream(new ZstdOutputStream(fileStream, ZSTD_LEVEL).setWorkers(threads),
+                    BUFFER_SIZE);
+        default:
+            return fileStream;
+        }
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public ShardKey getShardKey() {
+        return shardKey;
+    }
+
+    public void setShardKey(ShardKey shardKey) {
+        this.shardKey = shardKey;
+    }
+}
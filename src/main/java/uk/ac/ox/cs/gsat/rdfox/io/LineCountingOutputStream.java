@@ -0,0 +1,43 @@
+package uk.ac.ox.cs.gsat.rdfox.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream counting the lines written through it, which are the facts
+ * when the written data is in N-Triples.
+ */
+public class LineCountingOutputStream extends FilterOutputStream {
+
+    private long lineCount = 0;
+
+    public LineCountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (b == '\n') {
+            lineCount++;
+        }
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n') {
+                lineCount++;
+            }
+        }
+        out.write(b, off, len);
+    }
+
+    /**
+     * Returns the number of lines written so far
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+}
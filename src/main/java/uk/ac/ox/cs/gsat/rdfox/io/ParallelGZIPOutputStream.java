@@ -0,0 +1,138 @@
+package uk.ac.ox.cs.gsat.rdfox.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream compressing blocks of the written data in parallel.
+ *
+ * Each block is compressed as an independent gzip member and the members are
+ * written in order, which is a valid gzip file for the usual decompressors.
+ * As for {@link GZIPOutputStream}, the flush does not cut the current block,
+ * which is only compressed when it is full or when the stream is closed.
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+    public final static int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    // compression threads shared by the streams, their number is bounded by the blocks in flight
+    private final static ExecutorService COMPRESSORS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "gzip-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block;
+    private int blockLength = 0;
+    private boolean hasWrittenBlock = false;
+    private boolean closed = false;
+
+    public ParallelGZIPOutputStream(OutputStream out, int threads) {
+        this(out, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ParallelGZIPOutputStream(OutputStream out, int threads, int blockSize) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.maxPendingBlocks = Math.max(1, threads);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[blockLength++] = (byte) b;
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int copied = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, copied);
+            blockLength += copied;
+            off += copied;
+            len -= copied;
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Write the compressed blocks that are done, without waiting for the others
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone()) {
+            writeBlock(pendingBlocks.poll());
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            // an empty input is still written as a gzip member
+            if (blockLength > 0 || !hasWrittenBlock) {
+                submitBlock();
+            }
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.poll());
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        pendingBlocks.add(COMPRESSORS.submit(() -> compress(data, length)));
+        hasWrittenBlock = true;
+        block = new byte[blockSize];
+        blockLength = 0;
+
+        while (pendingBlocks.size() > maxPendingBlocks) {
+            writeBlock(pendingBlocks.poll());
+        }
+    }
+
+    private void writeBlock(Future<byte[]> compressedBlock) throws IOException {
+        try {
+            out.write(compressedBlock.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress a block", e.getCause());
+        }
+    }
+
+    private static byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 1 << 16)) {
+            gzip.write(data, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+}
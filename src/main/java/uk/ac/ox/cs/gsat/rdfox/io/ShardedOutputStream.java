@@ -0,0 +1,218 @@
+package uk.ac.ox.cs.gsat.rdfox.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Output stream dispatching the N-Triples lines written through it into
+ * several shards, according to the hash of their subject or predicate.
+ *
+ * Each shard has its own writer thread, so that the shards are written, and
+ * possibly compressed, concurrently.
+ */
+public class ShardedOutputStream extends OutputStream {
+
+    public enum ShardKey {
+        SUBJECT, PREDICATE
+    }
+
+    public final static int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private final OutputStream[] shards;
+    private final ShardKey shardKey;
+    private final int blockSize;
+    private final ExecutorService[] writers;
+    private final ByteArrayOutputStream[] blocks;
+    private final Future<?>[] lastWrites;
+    private final long[] lineCounts;
+    // the beginning of a line which is not yet complete
+    private final ByteArrayOutputStream pendingLine = new ByteArrayOutputStream();
+    private boolean closed = false;
+
+    public ShardedOutputStream(OutputStream[] shards, ShardKey shardKey) {
+        this(shards, shardKey, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ShardedOutputStream(OutputStream[] shards, ShardKey shardKey, int blockSize) {
+        this.shards = shards;
+        this.shardKey = shardKey;
+        this.blockSize = blockSize;
+        this.writers = new ExecutorService[shards.length];
+        this.blocks = new ByteArrayOutputStream[shards.length];
+        this.lastWrites = new Future<?>[shards.length];
+        this.lineCounts = new long[shards.length];
+
+        for (int i = 0; i < shards.length; i++) {
+            final int shard = i;
+            writers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "shard-writer-" + shard);
+                thread.setDaemon(true);
+                return thread;
+            });
+            blocks[i] = new ByteArrayOutputStream(blockSize + 1024);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int lineStart = off;
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == '\n') {
+                if (pendingLine.size() > 0) {
+                    pendingLine.write(b, lineStart, i + 1 - lineStart);
+                    byte[] line = pendingLine.toByteArray();
+                    pendingLine.reset();
+                    dispatch(line, 0, line.length);
+                } else {
+                    dispatch(b, lineStart, i + 1 - lineStart);
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        if (lineStart < off + len) {
+            pendingLine.write(b, lineStart, off + len - lineStart);
+        }
+    }
+
+    /**
+     * Hand the blocks of the shards to their writers
+     */
+    @Override
+    public void flush() throws IOException {
+        for (int shard = 0; shard < shards.length; shard++) {
+            if (blocks[shard].size() > 0) {
+                submitBlock(shard);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        IOException failure = null;
+        try {
+            if (pendingLine.size() > 0) {
+                byte[] line = pendingLine.toByteArray();
+                dispatch(line, 0, line.length);
+            }
+            flush();
+            for (int shard = 0; shard < shards.length; shard++) {
+                waitLastWrite(shard);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            for (int shard = 0; shard < shards.length; shard++) {
+                writers[shard].shutdown();
+                try {
+                    shards[shard].close();
+                } catch (IOException e) {
+                    failure = (failure == null) ? e : failure;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Returns the number of lines dispatched to each shard
+     */
+    public long[] getShardSizes() {
+        return lineCounts.clone();
+    }
+
+    private void dispatch(byte[] b, int start, int length) throws IOException {
+        int shard = getShard(b, start, length);
+        blocks[shard].write(b, start, length);
+        lineCounts[shard]++;
+
+        if (blocks[shard].size() >= blockSize) {
+            submitBlock(shard);
+        }
+    }
+
+    private void submitBlock(int shard) throws IOException {
+        byte[] data = blocks[shard].toByteArray();
+        blocks[shard].reset();
+
+        // at most one block in flight per shard, to bound the memory
+        waitLastWrite(shard);
+        lastWrites[shard] = writers[shard].submit(() -> {
+            shards[shard].write(data);
+            return null;
+        });
+    }
+
+    private void waitLastWrite(int shard) throws IOException {
+        if (lastWrites[shard] == null) {
+            return;
+        }
+
+        try {
+            lastWrites[shard].get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the shard " + shard);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to write the shard " + shard, e.getCause());
+        } finally {
+            lastWrites[shard] = null;
+        }
+    }
+
+    /**
+     * hash (FNV-1a) of the subject or of the predicate of the line modulo the
+     * number of shards
+     */
+    protected int getShard(byte[] b, int start, int length) {
+        int end = start + length;
+        int tokenStart = skipWhitespaces(b, start, end);
+        int tokenEnd = skipToken(b, tokenStart, end);
+
+        if (shardKey == ShardKey.PREDICATE) {
+            tokenStart = skipWhitespaces(b, tokenEnd, end);
+            tokenEnd = skipToken(b, tokenStart, end);
+        }
+
+        int hash = 0x811c9dc5;
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            hash ^= b[i];
+            hash *= 0x01000193;
+        }
+
+        return Math.floorMod(hash, shards.length);
+    }
+
+    private static int skipWhitespaces(byte[] b, int position, int end) {
+        while (position < end && (b[position] == ' ' || b[position] == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipToken(byte[] b, int position, int end) {
+        while (position < end && b[position] != ' ' && b[position] != '\t' && b[position] != '\n') {
+            position++;
+        }
+        return position;
+    }
+}
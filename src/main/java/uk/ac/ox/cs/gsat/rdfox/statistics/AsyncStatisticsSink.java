@@ -0,0 +1,103 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feed a sink from the notifications of a statistics collector. The sink is
+ * written by a background thread, in the order of the notifications, so that
+ * the threads recording the statistics never wait for its I/O.
+ */
+public class AsyncStatisticsSink implements StatisticsListener, AutoCloseable {
+
+	/** The sink. */
+	private final StatisticsSink sink;
+
+	/** Whether the ticks are written, or only the completed rows. */
+	private final boolean writingTicks;
+
+	/** The thread writing into the sink. */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "statistics-sink");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Whether an error of the sink has already been printed. */
+	private volatile boolean failed = false;
+
+	public AsyncStatisticsSink(StatisticsSink sink, boolean writingTicks) {
+		this.sink = sink;
+		this.writingTicks = writingTicks;
+	}
+
+	@Override
+	public void reported(String row) {
+	}
+
+	@Override
+	public void ticked(String row, StatisticsColumn col, long value) {
+		if (writingTicks) {
+			long time = System.currentTimeMillis();
+			submit(() -> sink.writeTick(time, row, col, value));
+		}
+	}
+
+	@Override
+	public void completed(String row, Map<? extends StatisticsColumn, Object> values) {
+		long time = System.currentTimeMillis();
+		submit(() -> sink.writeRow(time, row, values));
+	}
+
+	private interface Write {
+		void run() throws IOException;
+	}
+
+	private void submit(Write write) {
+		writer.execute(() -> {
+			try {
+				write.run();
+			} catch (IOException | RuntimeException e) {
+				// the statistics are lost, but the materialization goes on
+				if (!failed) {
+					failed = true;
+					System.err.println("Failed to write the statistics: " + e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Writes the pending notifications and closes the sink. If they are not
+	 * written within a minute, they are dropped, and the sink is only closed
+	 * once the write in progress has stopped.
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.shutdown();
+		if (!awaitTermination(1, TimeUnit.MINUTES)) {
+			List<Runnable> dropped = writer.shutdownNow();
+			System.err.println(String.format("The statistics sink is too slow, %d pending writes are dropped",
+					dropped.size()));
+			if (!awaitTermination(10, TimeUnit.SECONDS)) {
+				// closing the sink under the write in progress could corrupt its output
+				System.err.println("The statistics sink is still being written, it is left open");
+				return;
+			}
+		}
+		sink.close();
+	}
+
+	private boolean awaitTermination(long timeout, TimeUnit unit) {
+		try {
+			return writer.awaitTermination(timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return writer.isTerminated();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The distribution of the values measured by several repetitions of a run,
+ * summarized by its minimum, median, percentiles and standard deviation.
+ */
+public class Distribution {
+
+	private final long[] values;
+
+	public Distribution(Collection<? extends Number> values) {
+		this.values = values.stream().mapToLong(Number::longValue).sorted().toArray();
+		if (this.values.length == 0) {
+			throw new IllegalArgumentException("No value in the distribution");
+		}
+	}
+
+	public long min() {
+		return values[0];
+	}
+
+	public long max() {
+		return values[values.length - 1];
+	}
+
+	/**
+	 * @return the median, i.e. the mean of the two middle values for an even number of values
+	 */
+	public long median() {
+		int middle = values.length / 2;
+		if (values.length % 2 == 1) {
+			return values[middle];
+		}
+		return values[middle - 1] + (values[middle] - values[middle - 1]) / 2;
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the value of the given percentile, computed by the nearest-rank method
+	 */
+	public long percentile(double percentile) {
+		int rank = (int) Math.ceil(percentile / 100 * values.length);
+		return values[Math.min(values.length - 1, Math.max(0, rank - 1))];
+	}
+
+	public double mean() {
+		return Arrays.stream(values).average().getAsDouble();
+	}
+
+	/**
+	 * @return the sample standard deviation, which is 0 for a single value
+	 */
+	public double standardDeviation() {
+		if (values.length < 2) {
+			return 0;
+		}
+		double mean = mean();
+		double sum = 0;
+		for (long value : values) {
+			sum += (value - mean) * (value - mean);
+		}
+		return Math.sqrt(sum / (values.length - 1));
+	}
+
+	public int size() {
+		return values.length;
+	}
+}
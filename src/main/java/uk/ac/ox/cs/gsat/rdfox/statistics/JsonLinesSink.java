@@ -0,0 +1,101 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Write the statistics as JSON Lines, one object per completed row and per
+ * tick, each line being flushed once written:
+ * {"type":"row","time":...,"row":"...","MAT_TIME":...,...}
+ * {"type":"tick","time":...,"row":"...","column":"MAT_TIME","value":...}
+ * The times are in milliseconds since the epoch and the timing columns in
+ * nanoseconds.
+ */
+public class JsonLinesSink implements StatisticsSink {
+
+	private final Writer out;
+
+	public JsonLinesSink(OutputStream out) {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void writeTick(long time, String row, StatisticsColumn col, long value) throws IOException {
+		StringBuilder line = new StringBuilder("{\"type\":\"tick\",\"time\":").append(time);
+		appendField(line, "row", row);
+		appendField(line, "column", col.name());
+		appendField(line, "value", value);
+		writeLine(line);
+	}
+
+	@Override
+	public void writeRow(long time, String row, Map<? extends StatisticsColumn, Object> values) throws IOException {
+		StringBuilder line = new StringBuilder("{\"type\":\"row\",\"time\":").append(time);
+		appendField(line, "row", row);
+		for (Map.Entry<? extends StatisticsColumn, Object> entry : values.entrySet()) {
+			appendField(line, entry.getKey().name(), entry.getValue());
+		}
+		writeLine(line);
+	}
+
+	private void writeLine(StringBuilder line) throws IOException {
+		out.write(line.append("}\n").toString());
+		out.flush();
+	}
+
+	private static void appendField(StringBuilder line, String name, Object value) {
+		line.append(',');
+		appendString(line, name);
+		line.append(':');
+		if (value instanceof Long || value instanceof Integer) {
+			line.append(value);
+		} else if (value instanceof Number && Double.isFinite(((Number) value).doubleValue())) {
+			line.append(((Number) value).doubleValue());
+		} else if (value == null) {
+			line.append("null");
+		} else {
+			appendString(line, String.valueOf(value));
+		}
+	}
+
+	private static void appendString(StringBuilder line, String value) {
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
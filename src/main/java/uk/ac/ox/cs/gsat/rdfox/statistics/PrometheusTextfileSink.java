@@ -0,0 +1,132 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Export the numeric values of the completed rows as gauges into a file of
+ * the Prometheus text format, to be read by the textfile collector of the node
+ * exporter. The file is rewritten at each completed row, through a temporary
+ * file that is moved, so that the collector never reads a partial file. Only
+ * the latest sample of each metric and row is kept, for the last completed
+ * rows. The timing columns are exported in seconds:
+ * gsat_mat_time_seconds{row="..."} 1.234
+ */
+public class PrometheusTextfileSink implements StatisticsSink {
+
+	public static final String METRIC_PREFIX = "gsat_";
+	public static final int DEFAULT_MAX_ROWS = 1000;
+
+	private final Path path;
+	private final int maxRows;
+
+	/** The latest sample line of each metric, by metric name and by row. */
+	private final Map<String, Map<String, String>> samples = new TreeMap<>();
+	/** The text of each metric, only rebuilt when its samples change. */
+	private final Map<String, String> blocks = new HashMap<>();
+	/** The metrics of the kept rows, from the oldest completed row. */
+	private final Map<String, Set<String>> rowMetrics = new LinkedHashMap<>();
+
+	public PrometheusTextfileSink(Path path) {
+		this(path, DEFAULT_MAX_ROWS);
+	}
+
+	public PrometheusTextfileSink(Path path, int maxRows) {
+		this.path = path;
+		this.maxRows = maxRows;
+	}
+
+	@Override
+	public void writeRow(long time, String row, Map<? extends StatisticsColumn, Object> values) throws IOException {
+		Set<String> changedMetrics = new HashSet<>();
+		// a row completed again replaces its previous samples
+		removeRow(row, changedMetrics);
+
+		Set<String> metrics = new HashSet<>();
+		for (Map.Entry<? extends StatisticsColumn, Object> entry : values.entrySet()) {
+			if (!(entry.getValue() instanceof Number)) {
+				continue;
+			}
+			StatisticsColumn col = entry.getKey();
+			double value = ((Number) entry.getValue()).doubleValue();
+			if (col.isTiming()) {
+				value /= 1e9;
+			}
+			String name = getMetricName(col);
+			String sample = name + "{row=\"" + escape(row) + "\"} " + String.format(Locale.ROOT, "%s", value) + "\n";
+			samples.computeIfAbsent(name, n -> new LinkedHashMap<>()).put(row, sample);
+			metrics.add(name);
+		}
+		rowMetrics.put(row, metrics);
+		changedMetrics.addAll(metrics);
+
+		// the oldest rows are dropped
+		while (rowMetrics.size() > maxRows) {
+			removeRow(rowMetrics.keySet().iterator().next(), changedMetrics);
+		}
+
+		if (changedMetrics.isEmpty()) {
+			return;
+		}
+		// the samples of a metric are grouped under its type line
+		for (String name : changedMetrics) {
+			Map<String, String> metricSamples = samples.get(name);
+			if (metricSamples == null) {
+				blocks.remove(name);
+				continue;
+			}
+			StringBuilder block = new StringBuilder("# TYPE ").append(name).append(" gauge\n");
+			for (String sample : metricSamples.values()) {
+				block.append(sample);
+			}
+			blocks.put(name, block.toString());
+		}
+
+		Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+			for (String name : samples.keySet()) {
+				writer.write(blocks.get(name));
+			}
+		}
+		Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void removeRow(String row, Set<String> changedMetrics) {
+		Set<String> metrics = rowMetrics.remove(row);
+		if (metrics == null) {
+			return;
+		}
+		for (String name : metrics) {
+			Map<String, String> metricSamples = samples.get(name);
+			metricSamples.remove(row);
+			if (metricSamples.isEmpty()) {
+				samples.remove(name);
+			}
+		}
+		changedMetrics.addAll(metrics);
+	}
+
+	protected static String getMetricName(StatisticsColumn col) {
+		String name = METRIC_PREFIX + col.name().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+		return (col.isTiming()) ? name + "_seconds" : name;
+	}
+
+	private static String escape(String labelValue) {
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -19,37 +19,91 @@
  */
 package uk.ac.ox.cs.gsat.rdfox.statistics;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Observable;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
 
 /**
  * A statistictic collection, which keeps various values (times, cardinalities) in a table 
  * structure.
+ * Several rows can be recorded concurrently by different threads: the rows are kept in a
+ * concurrent map and each row is locked on its own, so that the threads recording different
+ * rows never wait for each other. The integral values are kept as primitive counters.
+ * The stop watch of a row is not shared: it must only be used by the thread working on the row,
+ * which may hand it over to another thread, e.g. to an executor.
  */
-public class StatisticsCollector<T extends StatisticsColumn> extends Observable {
+public class StatisticsCollector<T extends StatisticsColumn> {
 
-	/** The values. */
-	private final Table<String, T, Object> cells = HashBasedTable.create();
+	/** The rows, by name. */
+	private final ConcurrentMap<String, Row<T>> rows = new ConcurrentHashMap<>();
+
+	/** The names of the rows, in their creation order. */
+	private final Queue<String> rowNames = new ConcurrentLinkedQueue<>();
+
+	/** The columns having a value in some row. */
+	private final Set<T> columns = ConcurrentHashMap.newKeySet();
 
 	/** The stop watches currently in use. */
-	private final Map<String, StopWatch> stopWatchs = Maps.newLinkedHashMap();
+	private final ConcurrentMap<String, StopWatch> stopWatchs = new ConcurrentHashMap<>();
+
+	/** The listeners notified of the reported rows. */
+	private final List<StatisticsListener> listeners = new CopyOnWriteArrayList<>();
 	
 	/**
 	 * Clear all statistics.
 	 */
 	public void clear() {
-		this.cells.clear();
+		this.rows.clear();
+		this.rowNames.clear();
+		this.columns.clear();
 	}
 	
 	/**
-	 * @return the whole statistics table
+	 * @return a copy of the whole statistics table, with the rows in their creation order
+	 * and the columns in their insertion order
 	 */
 	public Table<String, T, Object> cells() {
-		return this.cells;
+		Table<String, T, Object> result = Tables.newCustomTable(Maps.newLinkedHashMap(), Maps::newLinkedHashMap);
+		for (String rowName : this.rowNames) {
+			Row<T> row = this.rows.get(rowName);
+			if (row != null) {
+				result.row(rowName).putAll(row.values());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the columns having a value in some row, without copying the table
+	 */
+	public Set<T> columns() {
+		return Collections.unmodifiableSet(this.columns);
+	}
+
+	/**
+	 * Gets or create the given row.
+	 */
+	private Row<T> getRow(String row) {
+		Row<T> result = this.rows.get(row);
+		if (result == null) {
+			Row<T> created = new Row<>();
+			result = this.rows.putIfAbsent(row, created);
+			if (result == null) {
+				this.rowNames.add(row);
+				result = created;
+			}
+		}
+		return result;
 	}
 	
 	/**
@@ -60,8 +114,8 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 	 * @param val the value
 	 */
 	public void put(Object row, T col, Object val) {
-		String key = String.valueOf(row);
-		this.cells.put(key, col, val);
+		this.columns.add(col);
+		getRow(String.valueOf(row)).put(col, val);
 	}
 	
     /**
@@ -71,17 +125,30 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 	 * @param col the column
 	 */
 	public void incr(Object row, T col) {
-        String key = String.valueOf(row);
-        Integer oldValue = (Integer) this.cells.get(row, col);
-        int value;
+		add(row, col, 1);
+	}
+
+	/**
+	 * Adds the delta to the value (assuming integer) in the given row and column.
+	 *
+	 * @param row the row
+	 * @param col the column
+	 * @param delta the value to add
+	 */
+	public void add(Object row, T col, long delta) {
+		this.columns.add(col);
+		getRow(String.valueOf(row)).add(col, delta);
+	}
 
-        if (oldValue != null) {
-            value = Integer.valueOf(oldValue) + 1;
-        } else {
-            value = 1;
-        }
+	/**
+	 * Registers a listener notified of the reported rows.
+	 */
+	public void addListener(StatisticsListener listener) {
+		this.listeners.add(listener);
+	}
 
-        this.cells.put(key, col, value);
+	public void removeListener(StatisticsListener listener) {
+		this.listeners.remove(listener);
 	}
 
 	/**
@@ -99,30 +166,32 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 	 * @param row the row to which the notification applies.
 	 */
 	public void report(String row) {
-		setChanged();
-		notifyObservers(row);
-	}
-	
-	/**
-	 * Notifies all observers that object has changed.
-	 */
-	public void reportAll() {
-		setChanged();
-		notifyObservers();
+		for (StatisticsListener listener : this.listeners) {
+			listener.reported(row);
+		}
 	}
 	
 	/**
-	 * Gets or create a stop watch for the given row.
+	 * Notifies the listeners that every value of the given row has been recorded.
 	 *
 	 * @param row the row's name
-	 * @return a (possibly fresh) stop watch for the given row.
 	 */
-	private StopWatch getOrCreate(String row) {
-		StopWatch sw = this.stopWatchs.get(row);
-		if (sw == null) {
-			this.stopWatchs.put(row, (sw = new StopWatch()));
+	public void complete(Object row) {
+		if (this.listeners.isEmpty()) {
+			return;
+		}
+		String key = String.valueOf(row);
+		Map<T, Object> values = row(key);
+		for (StatisticsListener listener : this.listeners) {
+			listener.completed(key, values);
 		}
-		return sw;
+	}
+
+	/**
+	 * Notifies all listeners that every row has changed.
+	 */
+	public void reportAll() {
+		report((String) null);
 	}
 	
 	/**
@@ -146,7 +215,7 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 	 */
 	public void start(Object row) {
 		String key = String.valueOf(row);
-		getOrCreate(key).start();
+		this.stopWatchs.computeIfAbsent(key, k -> new StopWatch()).start();
 	}
 	
 	/**
@@ -171,7 +240,8 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 
 	/**
 	 * Ticks the stop watch on the given row for the given key, i.e. accumulates on the given key
-	 * the time spent since the start or the last tick, whichever comes last.
+	 * the time in nanoseconds spent since the start or the last tick, whichever comes last.
+	 * The CPU time and the allocated bytes of the thread are accumulated as well.
 	 *
 	 * @param row the row's name
 	 * @param col the column
@@ -180,11 +250,11 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 		String key = String.valueOf(row);
 		StopWatch sw = getOrFail(key);
 		long lap = sw.lap();
-		Object existing = cells.get(key, col);
-		if (existing != null) {
-			lap += Long.valueOf(String.valueOf(existing));
+		this.columns.add(col);
+		long value = getRow(key).tick(col, lap, sw.lastCpuTime(), sw.lastAllocatedBytes());
+		for (StatisticsListener listener : this.listeners) {
+			listener.ticked(key, col, value);
 		}
-		cells.put(key, col, lap);
 	}
 
 	/**
@@ -195,7 +265,8 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 	public void stop(Object row, T totalTimeColumn) {
 		String key = String.valueOf(row);
 		StopWatch sw = getOrFail(key);
-		cells.put(key, totalTimeColumn, sw.total());
+		this.columns.add(totalTimeColumn);
+		getRow(key).set(totalTimeColumn, sw.total(), sw.cpuTotal(), sw.allocatedTotal());
 	}
 
 	/**
@@ -209,6 +280,17 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 		return getOrFail(key).total();
 	}
 	
+	/**
+	 * Gets a copy of the given row, which can be read while other rows are updated.
+	 *
+	 * @param row the row's name
+	 * @return the values of the given row indexed by column
+	 */
+	public Map<T, Object> row(String row) {
+		Row<T> result = this.rows.get(row);
+		return (result != null) ? result.values() : Maps.newLinkedHashMap();
+	}
+
 	/**
 	 * Gets the value on the given row and column
 	 *
@@ -217,6 +299,134 @@ public class StatisticsCollector<T extends StatisticsColumn> extends Observable
 	 * @return the value of the given row and column
 	 */
 	public Object get(String row, String key) {
-		return this.cells.get(row, key);
+		Row<T> result = this.rows.get(row);
+		if (result == null) {
+			return null;
+		}
+		for (Map.Entry<T, Object> entry : result.values().entrySet()) {
+			if (entry.getKey().name().equals(key)) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the value on the given row and column
+	 *
+	 * @param row the row's name
+	 * @param col the column
+	 * @return the value of the given row and column, or null
+	 */
+	public Object get(Object row, T col) {
+		Row<T> result = this.rows.get(String.valueOf(row));
+		return (result != null) ? result.get(col) : null;
+	}
+
+	/**
+	 * @return the CPU time in nanoseconds of the thread ticking the given row and column, or null
+	 */
+	public Long getCpuTime(Object row, StatisticsColumn col) {
+		Row<T> result = this.rows.get(String.valueOf(row));
+		return (result != null) ? result.getCpuTime(col) : null;
+	}
+
+	/**
+	 * @return the bytes allocated by the thread ticking the given row and column, or null
+	 */
+	public Long getAllocatedBytes(Object row, StatisticsColumn col) {
+		Row<T> result = this.rows.get(String.valueOf(row));
+		return (result != null) ? result.getAllocatedBytes(col) : null;
+	}
+
+	/**
+	 * A row of the table, whose cells are updated and read under the lock of the row.
+	 */
+	private static final class Row<T extends StatisticsColumn> {
+
+		private final Map<T, Cell> cells = Maps.newLinkedHashMap();
+
+		synchronized void put(T col, Object val) {
+			Cell cell = getCell(col);
+			if (val instanceof Long || val instanceof Integer || val instanceof Short || val instanceof Byte) {
+				cell.object = null;
+				cell.value = ((Number) val).longValue();
+			} else {
+				cell.object = val;
+			}
+			cell.timed = false;
+		}
+
+		synchronized Cell add(T col, long delta) {
+			Cell cell = getCell(col);
+			if (cell.object != null) {
+				cell.object = null;
+				cell.value = 0;
+			}
+			cell.value += delta;
+			return cell;
+		}
+
+		synchronized long tick(T col, long lap, long cpuTime, long allocatedBytes) {
+			Cell cell = add(col, lap);
+			cell.cpuTime += cpuTime;
+			cell.allocatedBytes += allocatedBytes;
+			cell.timed = true;
+			return cell.value;
+		}
+
+		synchronized void set(T col, long value, long cpuTime, long allocatedBytes) {
+			Cell cell = getCell(col);
+			cell.object = null;
+			cell.value = value;
+			cell.cpuTime = cpuTime;
+			cell.allocatedBytes = allocatedBytes;
+			cell.timed = true;
+		}
+
+		synchronized Object get(T col) {
+			Cell cell = this.cells.get(col);
+			return (cell != null) ? cell.get() : null;
+		}
+
+		synchronized Long getCpuTime(StatisticsColumn col) {
+			Cell cell = this.cells.get(col);
+			return (cell != null && cell.timed) ? cell.cpuTime : null;
+		}
+
+		synchronized Long getAllocatedBytes(StatisticsColumn col) {
+			Cell cell = this.cells.get(col);
+			return (cell != null && cell.timed) ? cell.allocatedBytes : null;
+		}
+
+		synchronized Map<T, Object> values() {
+			Map<T, Object> result = Maps.newLinkedHashMap();
+			for (Map.Entry<T, Cell> entry : this.cells.entrySet()) {
+				result.put(entry.getKey(), entry.getValue().get());
+			}
+			return result;
+		}
+
+		private Cell getCell(T col) {
+			return this.cells.computeIfAbsent(col, c -> new Cell());
+		}
+	}
+
+	/**
+	 * A cell, holding either an integral value or any other object.
+	 */
+	private static final class Cell {
+
+		private long value;
+		private Object object;
+
+		/** Whether the cell has been measured by a stop watch. */
+		private boolean timed;
+		private long cpuTime;
+		private long allocatedBytes;
+
+		Object get() {
+			return (object != null) ? object : Long.valueOf(value);
+		}
 	}
 }
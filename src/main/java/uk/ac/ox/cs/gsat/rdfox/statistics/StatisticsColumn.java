@@ -5,6 +5,14 @@ public interface StatisticsColumn {
 
     public String name();
 
+    /**
+     * whether the values of the column are durations in nanoseconds, which are
+     * printed in milliseconds
+     */
+    public default boolean isTiming() {
+        return false;
+    }
+
     // @Override
     // public int compareTo(StatisticsColumn col) {
     //     return this.getName().compareTo(col.getName());
@@ -0,0 +1,38 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import java.util.Map;
+
+/**
+ * A listener notified of the rows reported by a statistics collector. The
+ * notifications come from the threads recording the rows, possibly
+ * concurrently, so a listener doing any I/O should be wrapped into an
+ * AsyncStatisticsSink.
+ */
+public interface StatisticsListener {
+
+	/**
+	 * Notifies that the given row has been reported.
+	 *
+	 * @param row the name of the row, or null if every row has been reported
+	 */
+	void reported(String row);
+
+	/**
+	 * Notifies that a phase of the given row has been ticked.
+	 *
+	 * @param row the name of the row
+	 * @param col the column of the phase
+	 * @param value the value of the column after the tick, in nanoseconds
+	 */
+	default void ticked(String row, StatisticsColumn col, long value) {
+	}
+
+	/**
+	 * Notifies that every value of the given row has been recorded.
+	 *
+	 * @param row the name of the row
+	 * @param values a copy of the values of the row
+	 */
+	default void completed(String row, Map<? extends StatisticsColumn, Object> values) {
+	}
+}
@@ -26,17 +26,17 @@ import java.io.PrintStream;
 import java.sql.Date;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Observable;
-import java.util.Observer;
 import java.util.Properties;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Table;
 
 /**
  * StatisticsLogger, without the heavy lifting of Log4J or java.util.logging
@@ -44,7 +44,7 @@ import com.google.common.base.Joiner;
  * @author Julien Leblay
  * @author Maxime Buron
  */
-public class StatisticsLogger implements AutoCloseable, Observer {
+public class StatisticsLogger implements AutoCloseable, StatisticsListener {
 
 	/** The output print stream. */
 	private final PrintStream out;
@@ -61,13 +61,24 @@ public class StatisticsLogger implements AutoCloseable, Observer {
 	/** The global start time. */
 	private final long globalStart = System.currentTimeMillis();
 
+	/** The suffixes of the CPU time and allocated bytes columns. */
+	private static final String CPU_SUFFIX = "_CPU";
+	private static final String ALLOCATION_SUFFIX = "_ALLOC";
+
+	/** Whether the CPU time and allocated bytes of the timing columns are printed. */
+	private boolean printingResources = false;
+
 	/** The default value for printing out missing values. */
 	private static final String MISSING_VALUE = "N/A";
 	
 	/** The last printed header. */
 	private Set<StatisticsColumn> lastHeader = new HashSet<>();
 
-    protected List<StatisticsColumn> sortedHeader = new ArrayList<>();
+    /** The columns in their printing order, or null to print the collected columns sorted by name. */
+    protected List<StatisticsColumn> sortedHeader = null;
+
+	/** The collected columns sorted by name, sorted again only when a column is collected. */
+	private volatile List<StatisticsColumn> collectedHeader = Collections.emptyList();
 	
 	/**
 	 * Instantiates a new logger.
@@ -107,7 +118,7 @@ public class StatisticsLogger implements AutoCloseable, Observer {
 		this.out = out;
 		this.stats = stats;
 		this.commandLine = cmdLine;
-		this.stats.addObserver(this);
+		this.stats.addListener(this);
 	}
 
 	/**
@@ -186,8 +197,13 @@ public class StatisticsLogger implements AutoCloseable, Observer {
 		List<String> result = new ArrayList<String>();
 		// ensure INPUT is part of the header
 		result.add("INPUT");
-        for (StatisticsColumn col : sortHeader())
+        for (StatisticsColumn col : sortHeader()) {
             result.add(col.name());
+            if (printingResources && col.isTiming()) {
+                result.add(col.name() + CPU_SUFFIX);
+                result.add(col.name() + ALLOCATION_SUFFIX);
+            }
+        }
 		out.println(Joiner.on('\t').join(result));
 	}
 	
@@ -200,9 +216,14 @@ public class StatisticsLogger implements AutoCloseable, Observer {
         if (this.sortedHeader != null){
             return this.sortedHeader;
         } else {
-            List<StatisticsColumn> headers = new ArrayList<>();
-            headers.addAll(stats.cells().columnKeySet());
-            Collections.sort(headers.stream().map(h -> h.name()).collect(Collectors.toList()));
+            // the columns are only added, so the cached header is up to date while it has as many columns
+            Set<? extends StatisticsColumn> columns = stats.columns();
+            List<StatisticsColumn> headers = this.collectedHeader;
+            if (headers.size() != columns.size()) {
+                headers = new ArrayList<>(columns);
+                headers.sort(Comparator.comparing(StatisticsColumn::name));
+                this.collectedHeader = headers;
+            }
             return headers;
         }
 	}
@@ -217,26 +238,58 @@ public class StatisticsLogger implements AutoCloseable, Observer {
 	 * @param rowName the name of the row to print
 	 */
 	public void printRow(String rowName) {
-		Map<? extends StatisticsColumn, Object> row = this.stats.cells().row(rowName);
+		Map<? extends StatisticsColumn, Object> row = this.stats.row(rowName);
 		StringBuilder result = new StringBuilder(rowName);
 		for (StatisticsColumn col: sortHeader()) {
-			result.append('\t').append(row.getOrDefault(col, MISSING_VALUE));
+			appendCells(result, rowName, col, row.get(col));
 		}
 		out.println(result);
 	}
 
+	/**
+	 * Appends the value of the column, and its CPU time and allocated bytes if
+	 * they are printed. The durations are printed in milliseconds.
+	 */
+	private void appendCells(StringBuilder result, String rowName, StatisticsColumn col, Object value) {
+		result.append('\t').append(format(col, value));
+		if (printingResources && col.isTiming()) {
+			result.append('\t').append(format(col, this.stats.getCpuTime(rowName, col)));
+			Long allocated = this.stats.getAllocatedBytes(rowName, col);
+			result.append('\t').append((allocated != null) ? allocated : MISSING_VALUE);
+		}
+	}
+
+	private static Object format(StatisticsColumn col, Object value) {
+		if (value == null) {
+			return MISSING_VALUE;
+		}
+		if (col.isTiming() && value instanceof Number) {
+			return String.format(Locale.ROOT, "%.3f", ((Number) value).longValue() / 1e6);
+		}
+		return value;
+	}
+
+    /**
+	 * Prints also the CPU time and the allocated bytes of the timing columns.
+	 */
+    public void setPrintingResources(boolean printingResources) {
+        this.printingResources = printingResources;
+    }
+
 	/**
 	 * Prints the all rows.
 	 */
 	public void printAll() {
 		// Ensuring the column order is preserve across lines.
 		List<StatisticsColumn> cols = sortHeader();
-        for(String key : this.stats.cells().rowKeySet()) {
+		// a copy of the table, which is not modified while printed
+		Table<String, ? extends StatisticsColumn, Object> cells = this.stats.cells();
+        for(String key : cells.rowKeySet()) {
 			StringBuilder result = new StringBuilder(key);
-            Map<? extends StatisticsColumn, Object> row = this.stats.cells().row(key);
+            Map<? extends StatisticsColumn, Object> row = cells.row(key);
 
 			for (StatisticsColumn col: cols) {
-				result.append('\t').append(row.getOrDefault(col, MISSING_VALUE));
+				appendCells(result, key, col, row.get(col));
 			}
 			out.println(result);
 		}
@@ -270,22 +323,23 @@ public class StatisticsLogger implements AutoCloseable, Observer {
 
 	/**
 	 * {@inheritDoc}
-	 * @see java.util.Observer#update(java.util.Observable, java.lang.Object)
+	 * The rows reported concurrently are printed one after the other.
+	 * @see uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsListener#reported(java.lang.String)
 	 */
 	@Override
-	public void update(Observable o, Object arg) {
+	public synchronized void reported(String arg) {
 		if (!hasPrintedProlog) {
 			printProlog();
 			hasPrintedProlog = true;
 		}
-		Set<? extends StatisticsColumn> header = this.stats.cells().columnKeySet();
+		Set<? extends StatisticsColumn> header = this.stats.columns();
 		if (!header.equals(lastHeader)) {
 			lastHeader = new HashSet<StatisticsColumn>();
             lastHeader.addAll(header);
 			printHeader();
 		}
 		if (arg != null) {
-			printRow((String) arg);
+			printRow(arg);
 		} else {
 			printAll();
 		}
@@ -0,0 +1,31 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A machine-readable destination of the statistics, written while the runs
+ * are going on. A sink is called by a single thread, see AsyncStatisticsSink.
+ */
+public interface StatisticsSink extends AutoCloseable {
+
+	/**
+	 * Writes the tick of a phase of the row.
+	 *
+	 * @param time the time of the tick, in milliseconds since the epoch
+	 * @param value the value of the column after the tick, in nanoseconds
+	 */
+	default void writeTick(long time, String row, StatisticsColumn col, long value) throws IOException {
+	}
+
+	/**
+	 * Writes the completed row.
+	 *
+	 * @param time the time of the completion, in milliseconds since the epoch
+	 * @param values the values of the row, the timing columns being in nanoseconds
+	 */
+	void writeRow(long time, String row, Map<? extends StatisticsColumn, Object> values) throws IOException;
+
+	@Override
+	void close() throws IOException;
+}
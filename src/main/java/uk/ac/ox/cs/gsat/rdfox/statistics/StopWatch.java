@@ -21,11 +21,23 @@ package uk.ac.ox.cs.gsat.rdfox.statistics;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 /**
  * StopWatch used with timing the execution of functions.
+ * 
+ * The times are measured in nanoseconds with the monotonic System.nanoTime.
+ * Each lap also measures the CPU time and the bytes allocated by the current
+ * thread, when the JVM supports it. These are only meaningful when the laps
+ * are taken by the thread that has started or resumed the stop watch, so they
+ * are zero for a lap taken by another thread.
  */
 public class StopWatch {
 
+	/** The bean giving the CPU time and the allocated bytes of the threads. */
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
 	/** The last tick. */
 	private long tick;
 	
@@ -34,6 +46,21 @@ public class StopWatch {
 	
 	/** Whether the stop watch is currently paused. */
 	private boolean paused = false;
+
+	/** The thread of the last tick. */
+	private long tickThread;
+
+	/** The CPU time and the allocated bytes of the thread at the last tick. */
+	private long cpuTick;
+	private long allocationTick;
+
+	/** The CPU time and the allocated bytes of the last lap. */
+	private long lastCpuTime;
+	private long lastAllocatedBytes;
+
+	/** The total CPU time and allocated bytes. */
+	private long cpuTotal;
+	private long allocatedTotal;
 	
 	/**
 	 * Starts the stop watch.
@@ -41,6 +68,8 @@ public class StopWatch {
 	public void start() {
 		this.resume();
 		this.total = 0;
+		this.cpuTotal = 0;
+		this.allocatedTotal = 0;
 		this.paused = false;
 	}
 
@@ -48,7 +77,10 @@ public class StopWatch {
 	 * Resumes the stop watch.
 	 */
 	public void resume() {
-		this.tick = System.currentTimeMillis();
+		this.tick = System.nanoTime();
+		this.tickThread = Thread.currentThread().getId();
+		this.cpuTick = getCurrentThreadCpuTime();
+		this.allocationTick = getCurrentThreadAllocatedBytes();
 		this.paused = false;
 	}
 	
@@ -60,22 +92,76 @@ public class StopWatch {
 	}
 
 	/**
-	 * @return the amount of times spent since the last lap or start whichever is the latest.
+	 * @return the amount of nanoseconds spent since the last lap or start whichever is the latest.
 	 */
 	public long lap() {
 		checkState(!paused, "Attempting to apply tick to paused stop watch");
-		long now = System.currentTimeMillis();
+		long now = System.nanoTime();
 		long lastLap = tick;
 		tick = now;
 		long result = now - lastLap;
 		total += result;
+
+		long cpuTime = getCurrentThreadCpuTime();
+		long allocatedBytes = getCurrentThreadAllocatedBytes();
+		boolean sameThread = tickThread == Thread.currentThread().getId();
+		lastCpuTime = (sameThread) ? Math.max(0, cpuTime - cpuTick) : 0;
+		lastAllocatedBytes = (sameThread) ? Math.max(0, allocatedBytes - allocationTick) : 0;
+		cpuTotal += lastCpuTime;
+		allocatedTotal += lastAllocatedBytes;
+		tickThread = Thread.currentThread().getId();
+		cpuTick = cpuTime;
+		allocationTick = allocatedBytes;
+
 		return result;
 	}
 
 	/**
-	 * @return the total time spent since the start of the stop match.
+	 * @return the total time in nanoseconds spent since the start of the stop match.
 	 */
 	public long total() {
 		return total;
 	}
+
+	/**
+	 * @return the CPU time in nanoseconds of the last lap
+	 */
+	public long lastCpuTime() {
+		return lastCpuTime;
+	}
+
+	/**
+	 * @return the bytes allocated during the last lap
+	 */
+	public long lastAllocatedBytes() {
+		return lastAllocatedBytes;
+	}
+
+	/**
+	 * @return the total CPU time in nanoseconds since the start
+	 */
+	public long cpuTotal() {
+		return cpuTotal;
+	}
+
+	/**
+	 * @return the total bytes allocated since the start
+	 */
+	public long allocatedTotal() {
+		return allocatedTotal;
+	}
+
+	private static long getCurrentThreadCpuTime() {
+		return (THREADS.isCurrentThreadCpuTimeSupported()) ? THREADS.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long getCurrentThreadAllocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return 0;
+	}
 }
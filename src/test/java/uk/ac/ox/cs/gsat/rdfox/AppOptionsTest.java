@@ -0,0 +1,62 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class AppOptionsTest {
+
+    @Test
+    public void testCommandLineOverridesConfig() throws IOException {
+        Path config = Files.createTempFile("gsat", ".properties");
+        try {
+            Files.write(config, Arrays.asList("threads=8", "store-type=parallel-ww", "server.max-memory=1024"),
+                    StandardCharsets.UTF_8);
+            Properties options = new Properties();
+            String[] args = App.parseOptions(new String[] { "--config", config.toString(), "--threads", "2", "rules" },
+                    options);
+            App.loadConfig(options);
+
+            assertEquals(1, args.length);
+            assertEquals("2", options.getProperty(App.THREADS_OPTION));
+            assertEquals("parallel-ww", options.getProperty(App.STORE_TYPE_OPTION));
+            assertEquals("1024", options.getProperty(App.SERVER_PARAMETER_PREFIX + "max-memory"));
+        } finally {
+            Files.delete(config);
+        }
+    }
+
+    @Test
+    public void testRunOptions() throws IOException {
+        Properties options = new Properties();
+        App.parseOptions(new String[] { "--timeout", "1.5", "--memory-limit", "2", "--partitions", "3", "--output",
+                "off", "--repeat", "5" }, options);
+        RunOptions runOptions = RunOptions.fromProperties(options);
+
+        assertEquals(1500, runOptions.getTimeout());
+        assertEquals(2 << 20, runOptions.getMemoryLimit());
+        assertEquals(3, runOptions.getPartitionCount());
+        assertEquals(5, runOptions.getRepeat());
+        assertEquals(0, runOptions.getWarmup());
+        assertFalse(runOptions.isOutputEnabled());
+        assertTrue(runOptions.isTGDCacheEnabled());
+        assertNull(runOptions.getWatDivCache());
+    }
+
+    @Test
+    public void testSweepThreadCounts() {
+        assertEquals(Arrays.asList(1), App.getSweepThreadCounts(1));
+        assertEquals(Arrays.asList(1, 2, 4, 8), App.getSweepThreadCounts(8));
+        assertEquals(Arrays.asList(1, 2, 4, 8, 12), App.getSweepThreadCounts(12));
+    }
+}
@@ -0,0 +1,185 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+public class ComponentMaterializerTest {
+
+    private static final String PREFIX = "https://oxfordsemantic.tech/RDFox/getting-started/";
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+    private final Variable x = Variable.create("x");
+    private final Variable y = Variable.create("y");
+    private final Predicate a = Predicate.create(PREFIX + "A", 1);
+    private final Predicate b = Predicate.create(PREFIX + "B", 1);
+    private final Predicate c = Predicate.create(PREFIX + "C", 1);
+    private final Predicate d = Predicate.create(PREFIX + "D", 1);
+    private final Predicate s = Predicate.create(PREFIX + "S", 2);
+
+    // A(x) -> B(x) and S(x, y) -> C(x) are two components
+    private final TGD ab = TGD.create(new Atom[] { Atom.create(a, x) }, new Atom[] { Atom.create(b, x) });
+    private final TGD sc = TGD.create(new Atom[] { Atom.create(s, x, y) }, new Atom[] { Atom.create(c, x) });
+
+    @Test
+    public void testComponents() {
+        Predicate r = Predicate.create("R", 2);
+
+        // {A, B, R} and {C, S} are the two components
+        TGD rb = TGD.create(new Atom[] { Atom.create(r, x, y) }, new Atom[] { Atom.create(b, y) });
+
+        Collection<List<TGD>> components = ComponentMaterializer.getComponents(Arrays.asList(ab, sc, rb)).values();
+
+        assertEquals(2, components.size());
+        assertTrue(components.contains(Arrays.asList(ab, rb)));
+        assertTrue(components.contains(Arrays.asList(sc)));
+    }
+
+    @Test
+    public void testRouting() throws Exception {
+        try (ComponentMaterializer materializer = new ComponentMaterializer("routing-test", 2)) {
+            List<List<TGD>> partitions = materializer
+                    .partition(ComponentMaterializer.getComponents(Arrays.asList(ab, sc)).values());
+            assertEquals(2, partitions.size());
+            int abPartition = partitions.get(0).contains(ab) ? 0 : 1;
+
+            ByteArrayOutputStream[] routes = { new ByteArrayOutputStream(), new ByteArrayOutputStream() };
+            String input = String.join("\n", type("a", "A"), triple("a", "S", "b"), "# a comment",
+                    triple("a", "unused", "b"));
+            materializer.route(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), routes);
+
+            // the facts of a predicate used by no TGD go to one of the partitions
+            Set<String> abFacts = lines(routes[abPartition]);
+            Set<String> scFacts = lines(routes[1 - abPartition]);
+            assertTrue(abFacts.contains(type("a", "A")));
+            assertTrue(scFacts.contains(triple("a", "S", "b")));
+            assertEquals(3, abFacts.size() + scFacts.size());
+
+            // a TGD joining both partitions can not be routed
+            TGD bcd = TGD.create(new Atom[] { Atom.create(b, x), Atom.create(c, x) }, new Atom[] { Atom.create(d, x) });
+            assertEquals(Integer.valueOf(abPartition), materializer.getPartition(ab));
+            assertEquals(null, materializer.getPartition(bcd));
+        }
+    }
+
+    @Test
+    public void testReifiedRouting() throws Exception {
+        Variable z = Variable.create("z");
+        Variable w = Variable.create("w");
+        Predicate family = Predicate.create(PREFIX + "family", 4);
+        // family(x, y, z, w) -> C(x) is in the partition of S(x, y) -> C(x)
+        TGD familyC = TGD.create(new Atom[] { Atom.create(family, x, y, z, w) }, new Atom[] { Atom.create(c, x) });
+
+        try (ComponentMaterializer materializer = new ComponentMaterializer("reified-routing-test", 2)) {
+            List<List<TGD>> partitions = materializer
+                    .partition(ComponentMaterializer.getComponents(Arrays.asList(ab, sc, familyC)).values());
+            assertEquals(2, partitions.size());
+            int familyPartition = partitions.get(0).contains(familyC) ? 0 : 1;
+
+            // every triple of the tuple goes to the partition of its predicate
+            ByteArrayOutputStream[] routes = { new ByteArrayOutputStream(), new ByteArrayOutputStream() };
+            List<String> tuple = new ArrayList<>();
+            for (int i = 1; i <= 4; i++) {
+                tuple.add(triple("t", "family#" + i, "a" + i));
+            }
+            String input = String.join("\n", tuple);
+            materializer.route(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), routes);
+
+            assertEquals(new HashSet<>(tuple), lines(routes[familyPartition]));
+            assertEquals(new HashSet<>(), lines(routes[1 - familyPartition]));
+        }
+    }
+
+    @Test
+    public void testExportAndUpdate() throws Exception {
+        List<Path> files = new ArrayList<>();
+        try {
+            String data = write(files, type("a", "A"), triple("a", "S", "b"));
+            String added = write(files, type("c", "A"), triple("c", "S", "d"));
+
+            StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
+            statsCollector.start("components");
+            try (ComponentMaterializer materializer = new ComponentMaterializer("component-test", 2)) {
+                materializer.setStatsCollector("components", statsCollector);
+
+                // the materialization is the concatenation of the exports of the partitions
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                assertEquals(4, materializer.materialize(data, Arrays.asList(ab, sc), output));
+                assertEquals(3, materializer.getDataStoreNames().size());
+                assertEquals(lines(type("a", "A"), type("a", "B"), triple("a", "S", "b"), type("a", "C")),
+                        lines(output));
+
+                // the added facts are routed to their partitions
+                ByteArrayOutputStream addedFacts = new ByteArrayOutputStream();
+                ByteArrayOutputStream removedFacts = new ByteArrayOutputStream();
+                assertEquals(4, materializer.update(added, null, null, null, addedFacts, removedFacts));
+                assertEquals(lines(type("c", "A"), type("c", "B"), triple("c", "S", "d"), type("c", "C")),
+                        lines(addedFacts));
+                assertEquals(3, materializer.getDataStoreNames().size());
+
+                // B(x), C(x) -> D(x) joins the partitions, which are merged
+                TGD bcd = TGD.create(new Atom[] { Atom.create(b, x), Atom.create(c, x) },
+                        new Atom[] { Atom.create(d, x) });
+                addedFacts.reset();
+                assertEquals(2, materializer.update(null, null, Arrays.asList(bcd), null, addedFacts, removedFacts));
+                assertEquals(lines(type("a", "D"), type("c", "D")), lines(addedFacts));
+                assertEquals(new HashSet<>(), lines(removedFacts));
+                assertEquals(1, materializer.getDataStoreNames().size());
+            }
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static String triple(String subject, String predicate, String object) {
+        return String.format("<%s%s> <%s%s> <%s%s> .", PREFIX, subject, PREFIX, predicate, PREFIX, object);
+    }
+
+    private static String type(String subject, String type) {
+        return String.format("<%s%s> <%s> <%s%s> .", PREFIX, subject, RDF_TYPE, PREFIX, type);
+    }
+
+    private static String write(List<Path> files, String... lines) throws IOException {
+        Path file = Files.createTempFile("gsat", ".nt");
+        files.add(file);
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file.toString();
+    }
+
+    private static Set<String> lines(String... lines) {
+        return new HashSet<>(Arrays.asList(lines));
+    }
+
+    private static Set<String> lines(ByteArrayOutputStream out) {
+        Set<String> result = new HashSet<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.trim().isEmpty()) {
+                result.add(line.trim());
+            }
+        }
+        return result;
+    }
+}
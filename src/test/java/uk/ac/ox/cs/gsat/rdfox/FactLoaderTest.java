@@ -0,0 +1,79 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+
+public class FactLoaderTest {
+
+    /**
+     * a loader recording the facts instead of importing them
+     */
+    private static class RecordingLoader extends FactLoader {
+
+        private final List<String> facts = new ArrayList<>();
+
+        RecordingLoader() {
+            super(null, null);
+        }
+
+        @Override
+        protected void add(String predicateName, List<String> arguments) {
+            facts.add(predicateName + arguments);
+        }
+    }
+
+    @Test
+    public void testDLGPFacts() throws IOException, JRDFoxException {
+        RecordingLoader loader = new RecordingLoader();
+        loader.loadDLGP(new StringReader("@facts\n"
+                + "% a comment.\n"
+                + "p(a, b, c). q(\"x, y\", <http://example.com/a.b>), r.\n"
+                + "[f1] s(1.5, d)\n"
+                + ".\n"
+                + "@rules\n"
+                + "t(X, Y, Z) :- p(X, Y, Z).\n"));
+
+        assertEquals(Arrays.asList("p[a, b, c]", "q[\"x, y\", <http://example.com/a.b>]", "r[]", "s[1.5, d]"),
+                loader.facts);
+    }
+
+    @Test
+    public void testCSVLine() {
+        assertEquals(Arrays.asList("a", "b c", "d,\"e\"", ""), FactLoader.splitCSV("a, b c ,\"d,\"\"e\"\"\","));
+    }
+
+    @Test
+    public void testSymbol() {
+        assertEquals("a b", FactLoader.getSymbol("\"a b\""));
+        assertEquals("http://example.com/a", FactLoader.getSymbol("<http://example.com/a>"));
+        assertEquals("a", FactLoader.getSymbol("a"));
+    }
+
+    @Test
+    public void testReifiedUpdate() {
+        String update = FactLoader.getReifiedUpdate(Predicate.create("p", 4), "( \"a\" \"b\" \"c\" \"d\" )\n");
+
+        assertTrue(update.startsWith("INSERT { ?id <p#1> ?a0 . ?id <p#2> ?a1 . ?id <p#3> ?a2 . ?id <p#4> ?a3 . }"));
+        assertTrue(update.contains("VALUES (?a0 ?a1 ?a2 ?a3) {\n( \"a\" \"b\" \"c\" \"d\" )\n}"));
+        assertTrue(update.contains("?a0, ?a1, ?a2, ?a3) AS ?id)"));
+    }
+
+    @Test
+    public void testFactFile() {
+        assertTrue(FactLoader.isFactFile("facts.dlgp"));
+        assertTrue(FactLoader.isFactFile("data/p.csv.gz"));
+        assertFalse(FactLoader.isFactFile("input.nt"));
+    }
+}
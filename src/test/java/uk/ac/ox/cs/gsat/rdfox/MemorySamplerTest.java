@@ -0,0 +1,26 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MemorySamplerTest {
+
+    @Test
+    public void testHeapPeak() throws InterruptedException {
+        long[] array;
+        MemorySampler sampler = new MemorySampler(1);
+        try {
+            // an array of 64 MB is kept in the heap until the closing of the sampler
+            array = new long[8 << 20];
+            array[array.length - 1] = 1;
+            Thread.sleep(50);
+        } finally {
+            sampler.close();
+        }
+
+        assertTrue(array[array.length - 1] == 1);
+        assertTrue(sampler.getHeapPeak() >= 8L * array.length);
+        assertTrue(sampler.getOffHeapPeak() > 0);
+    }
+}
@@ -0,0 +1,33 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import tech.oxfordsemantic.jrdfox.exceptions.JRDFoxException;
+
+public class ParallelDataLoaderTest {
+
+    @Test
+    public void testCancel() throws IOException, JRDFoxException {
+        ParallelDataLoader loader = new ParallelDataLoader(null, "loader-test", 2, 16);
+        loader.cancel();
+
+        // no chunk is imported once the loader is cancelled
+        InputStream data = new ByteArrayInputStream(
+                "<a> <b> <c> .\n<d> <e> <f> .\n".getBytes(StandardCharsets.UTF_8));
+        boolean cancelled = false;
+        try {
+            loader.load(data, true, null, null);
+        } catch (InterruptedIOException e) {
+            cancelled = true;
+        }
+        assertTrue(cancelled);
+    }
+}
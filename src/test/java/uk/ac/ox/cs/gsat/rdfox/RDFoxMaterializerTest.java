@@ -0,0 +1,180 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import uk.ac.ox.cs.gsat.MaterializationStatColumns;
+import uk.ac.ox.cs.gsat.rdfox.statistics.StatisticsCollector;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+public class RDFoxMaterializerTest {
+
+    private static final String PREFIX = "https://oxfordsemantic.tech/RDFox/getting-started/";
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+    private final Variable x = Variable.create("x");
+    private final Variable y = Variable.create("y");
+    private final Predicate hasParent = Predicate.create(PREFIX + "hasParent", 2);
+    private final Predicate parent = Predicate.create(PREFIX + "Parent", 1);
+    private final Predicate forename = Predicate.create(PREFIX + "forename", 2);
+
+    @Test
+    public void testUpdate() throws Exception {
+        // hasParent(x, y) -> Parent(y)
+        TGD parentTGD = TGD.create(new Atom[] { Atom.create(hasParent, x, y) }, new Atom[] { Atom.create(parent, y) });
+        List<Path> files = new ArrayList<>();
+        try {
+            String data = write(files, triple("meg", "hasParent", "lois"), triple("chris", "hasParent", "peter"));
+            String added = write(files, triple("stewie", "hasParent", "lois"), triple("stewie", "forename", "stewie"));
+            String removed = write(files, triple("chris", "hasParent", "peter"));
+
+            StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
+            statsCollector.start("update");
+            try (RDFoxMaterializer materializer = new RDFoxMaterializer("update-test")) {
+                materializer.setStatsCollector("update", statsCollector);
+                assertEquals(4, materializer.materialize(data, Arrays.asList(parentTGD), (OutputStream) null));
+
+                // lois is already a parent, peter is not anymore
+                ByteArrayOutputStream addedFacts = new ByteArrayOutputStream();
+                ByteArrayOutputStream removedFacts = new ByteArrayOutputStream();
+                assertEquals(4, materializer.update(added, removed, null, null, addedFacts, removedFacts));
+                assertEquals(lines(triple("stewie", "hasParent", "lois"), triple("stewie", "forename", "stewie")),
+                        lines(addedFacts));
+                assertEquals(lines(triple("chris", "hasParent", "peter"), type("peter", "Parent")),
+                        lines(removedFacts));
+
+                // removing the TGD removes the facts it has derived, adding it back restores them
+                addedFacts.reset();
+                removedFacts.reset();
+                assertEquals(1, materializer.update(null, null, null, Arrays.asList(parentTGD), addedFacts,
+                        removedFacts));
+                assertEquals(Collections.emptySet(), lines(addedFacts));
+                assertEquals(lines(type("lois", "Parent")), lines(removedFacts));
+
+                addedFacts.reset();
+                removedFacts.reset();
+                assertEquals(1, materializer.update(null, null, Arrays.asList(parentTGD), null, addedFacts,
+                        removedFacts));
+                assertEquals(lines(type("lois", "Parent")), lines(addedFacts));
+                assertEquals(Collections.emptySet(), lines(removedFacts));
+            }
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testRemovedTGDSharingARule() throws Exception {
+        Predicate person = Predicate.create(PREFIX + "Person", 1);
+        // hasParent(x, y) -> Parent(y), Person(x) and hasParent(x, y) -> Parent(y) share the rule of Parent
+        TGD parentTGD = TGD.create(new Atom[] { Atom.create(hasParent, x, y) }, new Atom[] { Atom.create(parent, y) });
+        TGD personTGD = TGD.create(new Atom[] { Atom.create(hasParent, x, y) },
+                new Atom[] { Atom.create(parent, y), Atom.create(person, x) });
+        List<Path> files = new ArrayList<>();
+        try {
+            String data = write(files, triple("meg", "hasParent", "lois"));
+
+            StatisticsCollector<MaterializationStatColumns> statsCollector = new StatisticsCollector<>();
+            statsCollector.start("shared-rule");
+            try (RDFoxMaterializer materializer = new RDFoxMaterializer("shared-rule-test")) {
+                materializer.setStatsCollector("shared-rule", statsCollector);
+                assertEquals(3, materializer.materialize(data, Arrays.asList(parentTGD, personTGD),
+                        (OutputStream) null));
+
+                // the rule of Parent is kept for the TGD that is not removed
+                ByteArrayOutputStream addedFacts = new ByteArrayOutputStream();
+                ByteArrayOutputStream removedFacts = new ByteArrayOutputStream();
+                assertEquals(1, materializer.update(null, null, null, Arrays.asList(personTGD), addedFacts,
+                        removedFacts));
+                assertEquals(Collections.emptySet(), lines(addedFacts));
+                assertEquals(lines(type("meg", "Person")), lines(removedFacts));
+            }
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testDataPredicates() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            String data = write(files, "# a comment", triple("meg", "hasParent", "lois"), type("lois", "Parent"),
+                    String.format("<%smeg> <%sforename> \"Meg Griffin\" .", PREFIX, PREFIX));
+
+            assertEquals(new HashSet<>(Arrays.asList(hasParent, parent, forename)),
+                    RDFoxMaterializer.getDataPredicates(data));
+        } finally {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testTriplePattern() {
+        Predicate family = Predicate.create(PREFIX + "family", 4);
+        Predicate sibling = Predicate.create(PREFIX + "siblingThrough", 3);
+
+        // the ternary predicate has its tuple table, the one of four arguments is reified
+        String properties = String.format("<%shasParent> <%sfamily#1> <%sfamily#2> <%sfamily#3> <%sfamily#4>", PREFIX,
+                PREFIX, PREFIX, PREFIX, PREFIX);
+        assertEquals(String.format("{ VALUES ?p { %s } ?s ?p ?o }", properties),
+                RDFoxMaterializer.getTriplePattern(Arrays.asList(hasParent, family, sibling)));
+    }
+
+    @Test
+    public void testTupleOutputFile() {
+        assertEquals("rules-mat.nq", RDFoxMaterializer.getTupleOutputFile("rules-mat.nt"));
+        assertEquals("rules-mat.nq", RDFoxMaterializer.getTupleOutputFile("rules-mat"));
+    }
+
+    private static String triple(String subject, String predicate, String object) {
+        return String.format("<%s%s> <%s%s> <%s%s> .", PREFIX, subject, PREFIX, predicate, PREFIX, object);
+    }
+
+    private static String type(String subject, String type) {
+        return String.format("<%s%s> <%s> <%s%s> .", PREFIX, subject, RDF_TYPE, PREFIX, type);
+    }
+
+    private static String write(List<Path> files, String... lines) throws IOException {
+        Path file = Files.createTempFile("gsat", ".nt");
+        files.add(file);
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file.toString();
+    }
+
+    private static Set<String> lines(String... lines) {
+        return new HashSet<>(Arrays.asList(lines));
+    }
+
+    private static Set<String> lines(ByteArrayOutputStream out) {
+        Set<String> result = new HashSet<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.trim().isEmpty()) {
+                result.add(line.trim());
+            }
+        }
+        return result;
+    }
+}
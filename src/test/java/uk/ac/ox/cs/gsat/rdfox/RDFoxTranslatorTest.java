@@ -0,0 +1,119 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import tech.oxfordsemantic.jrdfox.logic.datalog.Rule;
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+public class RDFoxTranslatorTest {
+
+    private static final String PREFIX = "https://oxfordsemantic.tech/RDFox/getting-started/";
+
+    @Test
+    public void testSameRulesAsFactory() {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Predicate hasParent = Predicate.create(PREFIX + "hasParent", 2);
+        Predicate parent = Predicate.create(PREFIX + "Parent", 1);
+        Predicate person = Predicate.create(PREFIX + "Person", 1);
+
+        TGD tgd = TGD.create(new Atom[] { Atom.create(hasParent, x, y) },
+                new Atom[] { Atom.create(parent, y), Atom.create(person, x) });
+
+        assertEquals(RDFoxFactory.createDatalogRule(tgd), new RDFoxTranslator().translate(Arrays.asList(tgd)));
+    }
+
+    @Test
+    public void testTupleTables() {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Variable z = Variable.create("z");
+        Predicate sibling = Predicate.create(PREFIX + "siblingThrough", 3);
+        Predicate hasParent = Predicate.create(PREFIX + "hasParent", 2);
+
+        TGD tgd = TGD.create(new Atom[] { Atom.create(sibling, x, y, z) },
+                new Atom[] { Atom.create(hasParent, x, z), Atom.create(hasParent, y, z) });
+
+        RDFoxTranslator translator = new RDFoxTranslator();
+        assertEquals(RDFoxFactory.createDatalogRule(tgd), translator.translate(Arrays.asList(tgd)));
+        assertEquals(Collections.singleton(PREFIX + "siblingThrough"), translator.getTupleTables());
+    }
+
+    @Test
+    public void testReifiedAtoms() {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Variable z = Variable.create("z");
+        Variable w = Variable.create("w");
+        Predicate family = Predicate.create(PREFIX + "family", 4);
+        Predicate hasParent = Predicate.create(PREFIX + "hasParent", 2);
+        Predicate siblings = Predicate.create(PREFIX + "siblings", 4);
+
+        TGD tgd = TGD.create(new Atom[] { Atom.create(family, x, y, z, w) },
+                new Atom[] { Atom.create(hasParent, x, z), Atom.create(siblings, x, y, z, w) });
+
+        RDFoxTranslator translator = new RDFoxTranslator();
+        List<Rule> rules = translator.translate(Arrays.asList(tgd));
+        assertEquals(2, rules.size());
+        assertEquals(Collections.emptySet(), translator.getTupleTables());
+
+        // a triple per argument matches the body atom, the head atom binds its tuple id
+        assertEquals(1, rules.get(0).getHead().size());
+        assertEquals(4, rules.get(0).getBody().size());
+        assertEquals(4, rules.get(1).getHead().size());
+        assertEquals(5, rules.get(1).getBody().size());
+    }
+
+    @Test
+    public void testDuplicatesRemovedInParallel() {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Predicate parent = Predicate.create(PREFIX + "Parent", 1);
+
+        List<TGD> tgds = new ArrayList<>();
+        List<Rule> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Predicate relation = Predicate.create(PREFIX + "relation" + i, 2);
+            TGD tgd = TGD.create(new Atom[] { Atom.create(relation, x, y) }, new Atom[] { Atom.create(parent, y) });
+            // every TGD is given twice
+            tgds.add(tgd);
+            tgds.add(tgd);
+            expected.addAll(RDFoxFactory.createDatalogRule(tgd));
+        }
+
+        // a small threshold to split the translation into several tasks
+        assertEquals(expected, new RDFoxTranslator(8).translate(tgds));
+    }
+
+    @Test
+    public void testSharedBody() {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Variable z = Variable.create("z");
+        Predicate hasParent = Predicate.create(PREFIX + "hasParent", 2);
+        Predicate hasGrandParent = Predicate.create(PREFIX + "hasGrandParent", 2);
+        Predicate grandParent = Predicate.create(PREFIX + "GrandParent", 1);
+
+        TGD tgd = TGD.create(new Atom[] { Atom.create(hasParent, x, y), Atom.create(hasParent, y, z) },
+                new Atom[] { Atom.create(hasGrandParent, x, z), Atom.create(grandParent, z) });
+
+        RDFoxTranslator translator = new RDFoxTranslator();
+        translator.setSharedBody(true);
+        List<Rule> rules = translator.translate(Arrays.asList(tgd, tgd));
+
+        // one rule for the body and one per head atom
+        assertEquals(3, rules.size());
+        assertEquals(1, translator.getAuxiliaryTables().size());
+        assertEquals(2, translator.getSharedBodyCount());
+    }
+}
@@ -0,0 +1,59 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+public class RulePrunerTest {
+
+    private final Variable x = Variable.create("x");
+    private final Variable y = Variable.create("y");
+    private final Variable z = Variable.create("z");
+    private final Predicate a = Predicate.create("A", 1);
+    private final Predicate b = Predicate.create("B", 1);
+    private final Predicate c = Predicate.create("C", 1);
+    private final Predicate r = Predicate.create("R", 2);
+    private final Predicate s = Predicate.create("S", 2);
+
+    @Test
+    public void testUnreachableTGDs() {
+        // A(x) -> B(x), B(x) -> C(x) and S(x, y) -> C(x), with only A populated
+        TGD ab = TGD.create(new Atom[] { Atom.create(a, x) }, new Atom[] { Atom.create(b, x) });
+        TGD bc = TGD.create(new Atom[] { Atom.create(b, x) }, new Atom[] { Atom.create(c, x) });
+        TGD sc = TGD.create(new Atom[] { Atom.create(s, x, y) }, new Atom[] { Atom.create(c, x) });
+
+        RulePruner pruner = new RulePruner();
+        List<TGD> kept = pruner.prune(Arrays.asList(ab, bc, sc), new HashSet<>(Arrays.asList(a)));
+
+        assertEquals(Arrays.asList(ab, bc), kept);
+        assertEquals(1, pruner.getUnreachableCount());
+    }
+
+    @Test
+    public void testDuplicatedAndSubsumedTGDs() {
+        // R(x, y) -> A(x) subsumes R(x, z), B(z) -> A(x) and R(y, x) -> A(y)
+        TGD general = TGD.create(new Atom[] { Atom.create(r, x, y) }, new Atom[] { Atom.create(a, x) });
+        TGD specific = TGD.create(new Atom[] { Atom.create(r, x, z), Atom.create(b, z) },
+                new Atom[] { Atom.create(a, x) });
+        TGD renamed = TGD.create(new Atom[] { Atom.create(r, y, x) }, new Atom[] { Atom.create(a, y) });
+
+        RulePruner pruner = new RulePruner();
+        List<TGD> kept = pruner.prune(Arrays.asList(specific, general, general, renamed),
+                new HashSet<>(Arrays.asList(r, b)));
+
+        assertEquals(Collections.singletonList(general), kept);
+        assertEquals(1, pruner.getDuplicateCount());
+        assertEquals(2, pruner.getSubsumedCount());
+        assertEquals(3, pruner.getPrunedCount());
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RunWatchdogTest {
+
+    // the checks are run by the tests, not by the scheduler
+    private static final long PERIOD = 3600000;
+
+    @Test
+    public void testTimeout() throws InterruptedException {
+        StubMaterializer materializer = new StubMaterializer();
+        AtomicInteger cancellations = new AtomicInteger();
+        RunWatchdog watchdog = new RunWatchdog(materializer, 1, 0, PERIOD);
+        watchdog.addCancellation(cancellations::incrementAndGet);
+
+        Thread.sleep(10);
+        watchdog.check();
+        assertEquals(RunWatchdog.Status.TIMEOUT, watchdog.getStatus());
+        assertEquals(1, materializer.interrupts.get());
+        assertEquals(1, cancellations.get());
+
+        // the interruption is repeated, the cancellations are not
+        watchdog.check();
+        watchdog.check();
+        assertEquals(3, materializer.interrupts.get());
+        assertEquals(1, cancellations.get());
+
+        // the status is kept once closed and nothing is interrupted anymore
+        watchdog.close();
+        watchdog.check();
+        assertEquals(RunWatchdog.Status.TIMEOUT, watchdog.getStatus());
+        assertEquals(3, materializer.interrupts.get());
+    }
+
+    @Test
+    public void testMemoryLimit() {
+        StubMaterializer materializer = new StubMaterializer();
+        AtomicInteger storeMemory = new AtomicInteger(10);
+        RunWatchdog watchdog = new RunWatchdog(materializer, 0, 100, PERIOD) {
+            @Override
+            protected long getStoreMemory() {
+                return storeMemory.get();
+            }
+        };
+
+        watchdog.check();
+        assertEquals(RunWatchdog.Status.OK, watchdog.getStatus());
+        assertEquals(0, materializer.interrupts.get());
+
+        storeMemory.set(1000);
+        watchdog.check();
+        assertEquals(RunWatchdog.Status.OOM, watchdog.getStatus());
+        assertEquals(1, materializer.interrupts.get());
+
+        watchdog.close();
+        assertEquals(RunWatchdog.Status.OOM, watchdog.getStatus());
+    }
+
+    /**
+     * A materializer without data store, which counts its interruptions
+     */
+    private static class StubMaterializer extends RDFoxMaterializer {
+
+        private final AtomicInteger interrupts = new AtomicInteger();
+
+        StubMaterializer() {
+            super("watchdog-test", null, null);
+        }
+
+        @Override
+        public void interrupt() {
+            interrupts.incrementAndGet();
+        }
+    }
+}
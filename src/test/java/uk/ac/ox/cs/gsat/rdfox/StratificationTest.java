@@ -0,0 +1,59 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+public class StratificationTest {
+
+    @Test
+    public void testStrataOrder() {
+        Variable x = Variable.create("x");
+        Variable y = Variable.create("y");
+        Variable z = Variable.create("z");
+        Predicate edge = Predicate.create("edge", 2);
+        Predicate path = Predicate.create("path", 2);
+        Predicate connected = Predicate.create("Connected", 1);
+
+        // connected depends on the recursive path, which depends on edge
+        TGD tc = TGD.create(new Atom[] { Atom.create(path, x, y), Atom.create(path, y, z) },
+                new Atom[] { Atom.create(path, x, z) });
+        TGD connectedPath = TGD.create(new Atom[] { Atom.create(path, x, y) },
+                new Atom[] { Atom.create(connected, x) });
+        TGD base = TGD.create(new Atom[] { Atom.create(edge, x, y) }, new Atom[] { Atom.create(path, x, y) });
+
+        List<Stratification.Stratum> strata = new Stratification(Arrays.asList(connectedPath, tc, base))
+                .getStrata();
+
+        assertEquals(2, strata.size());
+        assertEquals(Arrays.asList(path), strata.get(0).getPredicates());
+        assertEquals(Arrays.asList(tc, base), strata.get(0).getTGDs());
+        assertTrue(strata.get(0).isRecursive());
+        assertEquals(Arrays.asList(connectedPath), strata.get(1).getTGDs());
+        assertFalse(strata.get(1).isRecursive());
+    }
+
+    @Test
+    public void testComponents() {
+        // 0 -> 1 -> 2 -> 1 and 3 alone
+        List<List<Integer>> successors = Arrays.asList(Arrays.asList(1), Arrays.asList(2), Arrays.asList(1),
+                Arrays.asList());
+        int[] components = Stratification.getComponents(successors);
+
+        assertEquals(components[1], components[2]);
+        assertTrue(components[0] != components[1]);
+        assertTrue(components[3] != components[0] && components[3] != components[1]);
+        // the components are numbered in reverse topological order
+        assertTrue(components[0] > components[1]);
+    }
+}
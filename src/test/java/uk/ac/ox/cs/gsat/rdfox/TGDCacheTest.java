@@ -0,0 +1,100 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import uk.ac.ox.cs.pdq.fol.Atom;
+import uk.ac.ox.cs.pdq.fol.Predicate;
+import uk.ac.ox.cs.pdq.fol.TGD;
+import uk.ac.ox.cs.pdq.fol.UntypedConstant;
+import uk.ac.ox.cs.pdq.fol.Variable;
+
+public class TGDCacheTest {
+
+    private final Variable x = Variable.create("x");
+    private final Variable y = Variable.create("y");
+    private final Predicate p = Predicate.create("p", 2);
+    private final Predicate q = Predicate.create("q", 1);
+    private final Predicate r = Predicate.create("r", 2);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // p(x, y) -> q(y) and p(x, y), q(x) -> r(x, a)
+        List<TGD> tgds = Arrays.asList(
+                TGD.create(new Atom[] { Atom.create(p, x, y) }, new Atom[] { Atom.create(q, y) }),
+                TGD.create(new Atom[] { Atom.create(p, x, y), Atom.create(q, x) },
+                        new Atom[] { Atom.create(r, x, UntypedConstant.create("a")) }));
+
+        Path rules = Files.createTempFile("gsat", ".dlgp");
+        try {
+            Files.write(rules, Arrays.asList("q(Y) :- p(X, Y).", "r(X, a) :- p(X, Y), q(X)."),
+                    StandardCharsets.UTF_8);
+            TGDCache.write(rules.toString(), tgds);
+
+            List<TGD> cachedTGDs = TGDCache.load(rules.toString());
+            assertNotNull(cachedTGDs);
+            assertEquals(tgds, cachedTGDs);
+            // the TGDs are decoded once
+            assertSame(cachedTGDs.get(1), cachedTGDs.get(1));
+        } finally {
+            Files.deleteIfExists(TGDCache.getCachePath(rules.toString()));
+            Files.delete(rules);
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws IOException {
+        List<TGD> tgds = Arrays
+                .asList(TGD.create(new Atom[] { Atom.create(p, x, y) }, new Atom[] { Atom.create(q, y) }));
+
+        Path rules = Files.createTempFile("gsat", ".dlgp");
+        try {
+            assertNull(TGDCache.load(rules.toString()));
+
+            Files.write(rules, Arrays.asList("q(Y) :- p(X, Y)."), StandardCharsets.UTF_8);
+            TGDCache.write(rules.toString(), tgds);
+            assertNotNull(TGDCache.load(rules.toString()));
+
+            // the cache of a modified rule file is not used anymore
+            Files.write(rules, Arrays.asList("q(X) :- p(X, Y)."), StandardCharsets.UTF_8,
+                    StandardOpenOption.APPEND);
+            assertNull(TGDCache.load(rules.toString()));
+        } finally {
+            Files.deleteIfExists(TGDCache.getCachePath(rules.toString()));
+            Files.delete(rules);
+        }
+    }
+
+    @Test
+    public void testTruncatedCache() throws IOException {
+        List<TGD> tgds = Arrays
+                .asList(TGD.create(new Atom[] { Atom.create(p, x, y) }, new Atom[] { Atom.create(q, y) }));
+
+        Path rules = Files.createTempFile("gsat", ".dlgp");
+        try {
+            Files.write(rules, Arrays.asList("q(Y) :- p(X, Y)."), StandardCharsets.UTF_8);
+            TGDCache.write(rules.toString(), tgds);
+
+            // a cache missing the end of its last TGD is not used
+            Path cachePath = TGDCache.getCachePath(rules.toString());
+            byte[] bytes = Files.readAllBytes(cachePath);
+            Files.write(cachePath, Arrays.copyOf(bytes, bytes.length - Integer.BYTES));
+            assertNull(TGDCache.load(rules.toString()));
+        } finally {
+            Files.deleteIfExists(TGDCache.getCachePath(rules.toString()));
+            Files.delete(rules);
+        }
+    }
+}
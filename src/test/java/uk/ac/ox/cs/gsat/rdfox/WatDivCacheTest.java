@@ -0,0 +1,68 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WatDivCacheTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gsat-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testCommitAndLookup() throws IOException {
+        WatDivCache cache = new WatDivCache(directory, 1 << 20);
+        WatDivCache.Entry entry = cache.create("key");
+        entry.write("<a> <b> <c> .\n".getBytes(StandardCharsets.UTF_8));
+        entry.commit(1);
+
+        try (WatDivCache.CachedInput input = cache.lookup("key")) {
+            assertEquals(1, input.getSize());
+            assertTrue(Files.exists(Path.of(input.getPath())));
+        }
+        assertNull(cache.lookup("other"));
+    }
+
+    @Test
+    public void testPinnedEntryIsNotEvicted() throws IOException {
+        // the cache cannot hold any entry, so each one is evicted once released
+        WatDivCache cache = new WatDivCache(directory, 0);
+        Files.write(directory.resolve("key.nt.gz"), new byte[] { 1, 2, 3 });
+        Files.write(directory.resolve("key.size"), "1".getBytes(StandardCharsets.UTF_8));
+
+        WatDivCache.CachedInput input = cache.lookup("key");
+        WatDivCache.CachedInput sameInput = cache.lookup("key");
+        cache.evict();
+        assertTrue(Files.exists(Path.of(input.getPath())));
+
+        input.close();
+        assertTrue(Files.exists(Path.of(input.getPath())));
+
+        sameInput.close();
+        assertFalse(Files.exists(Path.of(input.getPath())));
+        assertNull(cache.lookup("key"));
+    }
+}
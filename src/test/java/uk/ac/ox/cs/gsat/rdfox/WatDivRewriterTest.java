@@ -0,0 +1,48 @@
+package uk.ac.ox.cs.gsat.rdfox;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class WatDivRewriterTest {
+
+    private static final String TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+
+    @Test
+    public void testConceptSuffixRemoval() throws IOException {
+        String input = "<http://ex.org/e1> " + TYPE + " <http://ex.org/Person0> .\n"
+                + "<http://ex.org/e2> " + TYPE + " <http://ex.org/Unknown0> .\n"
+                + "<http://ex.org/e3> <http://ex.org/knows> <http://ex.org/Person0> .\n";
+        String expected = "<http://ex.org/e1> " + TYPE + " <http://ex.org/Person> .\n"
+                + "<http://ex.org/e2> " + TYPE + " <http://ex.org/Unknown0> .\n"
+                + "<http://ex.org/e3> <http://ex.org/knows> <http://ex.org/Person0> .\n";
+
+        assertEquals(expected, rewrite(input, 1 << 10, 3));
+    }
+
+    @Test
+    public void testWhitespacesAndSmallBuffer() throws IOException {
+        // the lines are longer than the buffer and the last one has no new line
+        String input = "  <http://ex.org/e1>\t" + TYPE + "   <http://ex.org/Person0>  . \n\n"
+                + "<http://ex.org/e2> <http://ex.org/name> \"a  b\" .";
+        String expected = "<http://ex.org/e1> " + TYPE + " <http://ex.org/Person> .\n"
+                + "<http://ex.org/e2> <http://ex.org/name> \"a b\" .\n";
+
+        assertEquals(expected, rewrite(input, 16, 2));
+    }
+
+    private static String rewrite(String input, int bufferSize, long expectedCount) throws IOException {
+        WatDivRewriter rewriter = new WatDivRewriter(Arrays.asList("http://ex.org/Person"), bufferSize);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long count = rewriter.rewrite(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output);
+
+        assertEquals(expectedCount, count);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package uk.ac.ox.cs.gsat.rdfox.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import uk.ac.ox.cs.gsat.rdfox.io.ShardedOutputStream.ShardKey;
+
+public class ExportStreamsTest {
+
+    @Test
+    public void testParallelGZIPRoundTrip() throws IOException {
+        byte[] data = getTriples(10000).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        // small blocks to get many gzip members
+        try (OutputStream gzip = new ParallelGZIPOutputStream(compressed, 4, 1000)) {
+            gzip.write(data, 0, 12345);
+            gzip.write(data, 12345, data.length - 12345);
+        }
+
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (GZIPInputStream gunzip = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            gunzip.transferTo(decompressed);
+        }
+
+        assertArrayEquals(data, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testShardingByPredicate() throws IOException {
+        ByteArrayOutputStream[] shardOutputs = new ByteArrayOutputStream[3];
+        for (int i = 0; i < shardOutputs.length; i++) {
+            shardOutputs[i] = new ByteArrayOutputStream();
+        }
+
+        String triples = getTriples(1000);
+        ShardedOutputStream sharded = new ShardedOutputStream(shardOutputs, ShardKey.PREDICATE, 100);
+        byte[] data = triples.getBytes(StandardCharsets.UTF_8);
+        // the lines are cut between two writes
+        sharded.write(data, 0, 7);
+        sharded.write(data, 7, data.length - 7);
+        sharded.close();
+
+        long total = 0;
+        for (int i = 0; i < shardOutputs.length; i++) {
+            String shard = shardOutputs[i].toString(StandardCharsets.UTF_8);
+            long lines = shard.chars().filter(c -> c == '\n').count();
+            assertEquals(lines, sharded.getShardSizes()[i]);
+            total += lines;
+
+            // every triple of a predicate is in the same shard
+            for (String line : shard.split("\n")) {
+                if (!line.isEmpty()) {
+                    String predicate = line.split(" ")[1];
+                    for (int j = 0; j < shardOutputs.length; j++) {
+                        if (j != i) {
+                            assertEquals(false, shardOutputs[j].toString(StandardCharsets.UTF_8).contains(" " + predicate + " "));
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(1000, total);
+    }
+
+    private static String getTriples(int count) {
+        StringBuilder triples = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            triples.append(String.format("<http://example.com/s%d> <http://example.com/p%d> <http://example.com/o%d> .\n",
+                    i, i % 7, i));
+        }
+        return triples.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DistributionTest {
+
+    @Test
+    public void testOddNumberOfValues() {
+        Distribution distribution = new Distribution(Arrays.asList(5L, 1L, 4L, 2L, 3L));
+
+        assertEquals(1, distribution.min());
+        assertEquals(5, distribution.max());
+        assertEquals(3, distribution.median());
+        assertEquals(5, distribution.percentile(90));
+        assertEquals(1, distribution.percentile(0));
+        assertEquals(Math.sqrt(2.5), distribution.standardDeviation(), 1e-9);
+    }
+
+    @Test
+    public void testEvenNumberOfValues() {
+        Distribution distribution = new Distribution(Arrays.asList(10, 40, 20, 30, 50, 60, 70, 80, 90, 100));
+
+        assertEquals(55, distribution.median());
+        // nearest-rank: the 9th of the 10 sorted values
+        assertEquals(90, distribution.percentile(90));
+        assertEquals(55.0, distribution.mean(), 1e-9);
+    }
+
+    @Test
+    public void testSingleValue() {
+        Distribution distribution = new Distribution(Arrays.asList(7L));
+
+        assertEquals(7, distribution.median());
+        assertEquals(7, distribution.percentile(90));
+        assertEquals(0.0, distribution.standardDeviation(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoValue() {
+        new Distribution(Arrays.<Long>asList());
+    }
+}
@@ -0,0 +1,141 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class StatisticsCollectorTest {
+
+    private enum Columns implements StatisticsColumn {
+        COUNT, SIZE, TIME, TOTAL;
+
+        @Override
+        public boolean isTiming() {
+            return this == TIME || this == TOTAL;
+        }
+    }
+
+    @Test
+    public void testTickAndPut() {
+        StatisticsCollector<Columns> stats = new StatisticsCollector<>();
+        stats.start("row");
+        stats.tick("row", Columns.TIME);
+        stats.tick("row", Columns.TIME);
+        stats.put("row", Columns.SIZE, 42);
+        stats.incr("row", Columns.COUNT);
+        stats.incr("row", Columns.COUNT);
+        stats.stop("row", Columns.TOTAL);
+
+        assertEquals(42L, stats.get("row", Columns.SIZE));
+        assertEquals(2L, stats.get("row", Columns.COUNT));
+        assertEquals(42L, stats.get("row", "SIZE"));
+        assertTrue((Long) stats.get("row", Columns.TIME) <= (Long) stats.get("row", Columns.TOTAL));
+        assertTrue(stats.getCpuTime("row", Columns.TIME) != null);
+        assertEquals(null, stats.getCpuTime("row", Columns.SIZE));
+
+        // the non integral values are kept as they are
+        stats.put("row", Columns.SIZE, "1;2");
+        assertEquals("1;2", stats.get("row", Columns.SIZE));
+        assertEquals(4, stats.row("row").size());
+    }
+
+    @Test
+    public void testInsertionOrder() {
+        StatisticsCollector<Columns> stats = new StatisticsCollector<>();
+        stats.put("second", Columns.TOTAL, 1);
+        stats.put("second", Columns.COUNT, 2);
+        stats.put("first", Columns.SIZE, 3);
+
+        assertEquals(Arrays.asList("second", "first"), new ArrayList<>(stats.cells().rowKeySet()));
+        assertEquals(Arrays.asList(Columns.TOTAL, Columns.COUNT, Columns.SIZE),
+                new ArrayList<>(stats.cells().columnKeySet()));
+        assertEquals(EnumSet.of(Columns.TOTAL, Columns.COUNT, Columns.SIZE), stats.columns());
+    }
+
+    /**
+     * Each thread records its own rows with its own stop watches, increments a
+     * shared row and reads the table, while the other threads do the same.
+     */
+    @Test
+    public void testConcurrentRows() throws Exception {
+        int threads = 8;
+        int rowsPerThread = 50;
+        int ticks = 200;
+        StatisticsCollector<Columns> stats = new StatisticsCollector<>();
+        AtomicInteger reported = new AtomicInteger();
+        stats.addListener(row -> reported.incrementAndGet());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            // a reader copying the table during the updates
+            Future<Integer> reader = executor.submit(() -> {
+                int copies = 0;
+                while (running.get()) {
+                    stats.cells();
+                    stats.row("shared");
+                    copies++;
+                }
+                return copies;
+            });
+
+            List<Future<Void>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    startSignal.await();
+                    for (int r = 0; r < rowsPerThread; r++) {
+                        String row = thread + "/" + r;
+                        stats.start(row);
+                        for (int i = 0; i < ticks; i++) {
+                            stats.tick(row, Columns.TIME);
+                            stats.incr(row, Columns.COUNT);
+                            stats.incr("shared", Columns.COUNT);
+                            stats.add("shared", Columns.SIZE, 2);
+                        }
+                        stats.put(row, Columns.SIZE, r);
+                        stats.stop(row, Columns.TOTAL);
+                        stats.report(row);
+                    }
+                    return null;
+                }));
+            }
+
+            startSignal.countDown();
+            for (Future<Void> writer : writers) {
+                writer.get();
+            }
+            running.set(false);
+            assertTrue(reader.get() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals((long) threads * rowsPerThread * ticks, stats.get("shared", Columns.COUNT));
+        assertEquals(2L * threads * rowsPerThread * ticks, stats.get("shared", Columns.SIZE));
+        assertEquals(threads * rowsPerThread, reported.get());
+        assertEquals(threads * rowsPerThread + 1, stats.cells().rowKeySet().size());
+        for (int t = 0; t < threads; t++) {
+            for (int r = 0; r < rowsPerThread; r++) {
+                String row = t + "/" + r;
+                assertEquals((long) ticks, stats.get(row, Columns.COUNT));
+                assertEquals((long) r, stats.get(row, Columns.SIZE));
+                // the laps of a row add up to its total time
+                assertEquals(stats.total(row), stats.get(row, Columns.TIME));
+            }
+        }
+    }
+}
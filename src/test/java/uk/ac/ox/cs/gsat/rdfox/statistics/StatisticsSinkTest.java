@@ -0,0 +1,98 @@
+package uk.ac.ox.cs.gsat.rdfox.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class StatisticsSinkTest {
+
+    private enum Columns implements StatisticsColumn {
+        SIZE, TIME, SHARDS;
+
+        @Override
+        public boolean isTiming() {
+            return this == TIME;
+        }
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StatisticsCollector<Columns> stats = new StatisticsCollector<>();
+        AsyncStatisticsSink sink = new AsyncStatisticsSink(new JsonLinesSink(out), true);
+        stats.addListener(sink);
+
+        stats.start("a \"row\"");
+        stats.tick("a \"row\"", Columns.TIME);
+        stats.put("a \"row\"", Columns.SIZE, 12);
+        stats.put("a \"row\"", Columns.SHARDS, "1;2");
+        stats.complete("a \"row\"");
+        sink.close();
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"type\":\"tick\","));
+        assertTrue(lines[0].contains("\"row\":\"a \\\"row\\\"\",\"column\":\"TIME\",\"value\":"));
+        assertTrue(lines[1].startsWith("{\"type\":\"row\","));
+        assertTrue(lines[1].contains("\"SIZE\":12"));
+        assertTrue(lines[1].contains("\"SHARDS\":\"1;2\""));
+        assertTrue(lines[1].endsWith("}"));
+    }
+
+    @Test
+    public void testPrometheusTextfile() throws IOException {
+        Path directory = Files.createTempDirectory("prometheus");
+        Path path = directory.resolve("gsat.prom");
+        StatisticsCollector<Columns> stats = new StatisticsCollector<>();
+        AsyncStatisticsSink sink = new AsyncStatisticsSink(new PrometheusTextfileSink(path), false);
+        stats.addListener(sink);
+
+        stats.put("first", Columns.TIME, 1500000000L);
+        stats.put("first", Columns.SIZE, 3);
+        stats.put("first", Columns.SHARDS, "1;2");
+        stats.complete("first");
+        stats.put("second", Columns.SIZE, 4);
+        stats.complete("second");
+        sink.close();
+
+        List<String> lines = Files.readAllLines(path);
+        assertTrue(lines.contains("# TYPE gsat_time_seconds gauge"));
+        assertTrue(lines.contains("gsat_time_seconds{row=\"first\"} 1.5"));
+        assertTrue(lines.contains("gsat_size{row=\"first\"} 3.0"));
+        assertTrue(lines.contains("gsat_size{row=\"second\"} 4.0"));
+        // the non numeric values are not exported, and the type of a metric is given once
+        assertEquals(5, lines.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testPrometheusTextfileMaxRows() throws IOException {
+        Path directory = Files.createTempDirectory("prometheus");
+        Path path = directory.resolve("gsat.prom");
+        PrometheusTextfileSink sink = new PrometheusTextfileSink(path, 2);
+
+        sink.writeRow(0, "first", Collections.singletonMap(Columns.SIZE, 1));
+        sink.writeRow(0, "second", Collections.singletonMap(Columns.SIZE, 2));
+        sink.writeRow(0, "first", Collections.singletonMap(Columns.SIZE, 3));
+        sink.writeRow(0, "third", Collections.singletonMap(Columns.TIME, 4000000000L));
+        sink.close();
+
+        // only the latest sample of the last completed rows is kept
+        List<String> lines = Files.readAllLines(path);
+        assertTrue(lines.contains("gsat_size{row=\"first\"} 3.0"));
+        assertTrue(lines.contains("gsat_time_seconds{row=\"third\"} 4.0"));
+        assertEquals(4, lines.size());
+    }
+}